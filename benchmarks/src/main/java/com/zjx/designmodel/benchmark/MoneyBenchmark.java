@@ -0,0 +1,83 @@
+package com.zjx.designmodel.benchmark;
+
+import com.zjx.designmodel.common.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 金额计算：long定点数 vs double vs BigDecimal
+ * <p>
+ * 模拟一张订单：若干商品单价乘以数量后累加。
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/18 16:00
+ * @Version V1.0
+ **/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoneyBenchmark {
+
+    private static final int ITEMS = 64;
+
+    private long[] fixedPrices;
+    private double[] doublePrices;
+    private BigDecimal[] decimalPrices;
+    private int[] quantities;
+
+    @Setup
+    public void setup() {
+        fixedPrices = new long[ITEMS];
+        doublePrices = new double[ITEMS];
+        decimalPrices = new BigDecimal[ITEMS];
+        quantities = new int[ITEMS];
+        for (int i = 0; i < ITEMS; i++) {
+            fixedPrices[i] = Money.of(i, 98);
+            doublePrices[i] = i + 0.98;
+            decimalPrices[i] = new BigDecimal(i + ".98");
+            quantities[i] = i % 5 + 1;
+        }
+    }
+
+    @Benchmark
+    public long fixedPoint() {
+        long total = Money.ZERO;
+        for (int i = 0; i < ITEMS; i++) {
+            total = Money.add(total, Money.multiply(fixedPrices[i], quantities[i]));
+        }
+        return total;
+    }
+
+    @Benchmark
+    public double primitiveDouble() {
+        double total = 0;
+        for (int i = 0; i < ITEMS; i++) {
+            total += doublePrices[i] * quantities[i];
+        }
+        return total;
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < ITEMS; i++) {
+            total = total.add(decimalPrices[i].multiply(BigDecimal.valueOf(quantities[i])));
+        }
+        return total;
+    }
+}
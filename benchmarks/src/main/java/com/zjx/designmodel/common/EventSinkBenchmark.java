@@ -0,0 +1,88 @@
+package com.zjx.designmodel.common;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多线程下同步输出与环形缓冲区异步输出的吞吐量对比
+ * <p>
+ * 输出目标是一个丢弃所有数据的PrintStream，排除终端本身的速度，只比较锁竞争带来的差异。
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/12 10:20
+ * @Version V1.0
+ **/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventSinkBenchmark {
+
+    private static final String EVENT = "制作一个苹果派产线";
+
+    @State(Scope.Benchmark)
+    public static class Sinks {
+
+        @Param({"console", "ring"})
+        public String type;
+
+        EventSink sink;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            PrintStream discard = new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                }
+            });
+            sink = "ring".equals(type) ? new RingBufferEventSink(discard, 1 << 16) : EventSinks.console(discard);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            if (sink instanceof RingBufferEventSink) {
+                ((RingBufferEventSink) sink).close();
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void publishSingleThread(Sinks sinks) {
+        sinks.sink.publish(EVENT);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void publish4Threads(Sinks sinks) {
+        sinks.sink.publish(EVENT);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void publish8Threads(Sinks sinks) {
+        sinks.sink.publish(EVENT);
+    }
+}
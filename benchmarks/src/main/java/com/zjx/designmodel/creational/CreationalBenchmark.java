@@ -0,0 +1,118 @@
+package com.zjx.designmodel.creational;
+
+import com.zjx.designmodel.common.Money;
+import lombok.Builder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 创建型模式的对象创建开销
+ * <p>
+ * 和被测类放在同一个包里，才能访问到包级私有的示例类；JMH生成的代码在另一个包里，所以基准方法统一返回Object。
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/13 10:00
+ * @Version V1.0
+ **/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CreationalBenchmark {
+
+    private Student prototype;
+    private FruitFactory fruitFactory;
+    private AnimalFactory dogFactory;
+    private PhoneFactory phoneFactory;
+
+    @Setup
+    public void setup() {
+        prototype = new Student();
+        prototype.setName("学生");
+        prototype.setAge(20);
+        prototype.setBirthDay(new Date());
+        fruitFactory = new FruitFactory();
+        dogFactory = new DogFactory();
+        phoneFactory = new PhoneFactoryImpl();
+    }
+
+    /**
+     * 原型模式：克隆（含Date深克隆）
+     */
+    @Benchmark
+    public Object prototypeClone() throws CloneNotSupportedException {
+        return prototype.clone();
+    }
+
+    /**
+     * 原型模式对照组：直接new再逐个赋值
+     */
+    @Benchmark
+    public Object prototypeNew() {
+        Student student = new Student();
+        student.setName(prototype.getName());
+        student.setAge(prototype.getAge());
+        student.setBirthDay(new Date(prototype.getBirthDay().getTime()));
+        return student;
+    }
+
+    @Benchmark
+    public Object productBuilder() {
+        return new ProductBuilder().name("苹果").priceFen(Money.of(5, 98)).address("深圳").build();
+    }
+
+    @Benchmark
+    public Object lombokBuilder() {
+        return LombokProduct.builder().name("苹果").priceFen(Money.of(5, 98)).address("深圳").build();
+    }
+
+    @Benchmark
+    public Object constructor() {
+        return new LombokProduct("苹果", Money.of(5, 98), "深圳");
+    }
+
+    @Benchmark
+    public Object fruitFactory() {
+        return fruitFactory.produce("apple");
+    }
+
+    @Benchmark
+    public Object dogFactory() {
+        return dogFactory.produce();
+    }
+
+    @Benchmark
+    public Object phoneFactoryHuaWei() {
+        return phoneFactory.getHuaWei();
+    }
+
+    @Benchmark
+    public Object phoneFactoryXiaoMi() {
+        return phoneFactory.getXiaoMi();
+    }
+
+    /**
+     * 与ProductBuilder.Product字段相同，用Lombok的@Builder生成建造者
+     */
+    @Builder
+    static class LombokProduct {
+
+        private final String name;
+        private final long priceFen;
+        private final String address;
+    }
+}
@@ -0,0 +1,166 @@
+package com.zjx.designmodel.loadgen;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 外卖下单接口压测工具
+ * <p>
+ * 先启动DesignModelApplication，再在benchmarks模块打包后运行：
+ * java -cp target/benchmarks.jar com.zjx.designmodel.loadgen.TakeawayLoadGenerator
+ * <p>
+ * 按固定速率发送POST /takeaways：第n个请求的计划发送时间是 开始时间 + n * 间隔，
+ * 多个发送线程依次领取序号，等到计划时间再发送，结束后输出吞吐量和p50/p99/p999延迟。
+ * <p>
+ * 延迟从请求的计划发送时间算起，而不是实际发送时间：服务端变慢时发送线程会被拖住、请求晚发，
+ * 如果从实际发送时间计时，这段排队时间就被悄悄漏掉了（coordinated omission），尾延迟会被严重低估。
+ * 发送线程数只需要足够覆盖 速率 * 单次延迟，不够时延迟会如实变大。
+ * <p>
+ * 只要收到了响应就记录延迟：422（下单被拒绝）也是服务端完整处理过的请求，漏掉它们同样会让百分位失真，
+ * 所以它们单独计数但照样进入延迟统计；只有连接失败、拿不到响应的请求才不计延迟。
+ * <p>
+ * 参数：[地址，默认http://localhost:8080/takeaways] [每秒请求数，默认1000] [持续秒数，默认10] [发送线程数，默认64]
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/12 14:30
+ * @Version V1.0
+ **/
+public class TakeawayLoadGenerator {
+
+    private static final int UNPROCESSABLE_ENTITY = 422;
+
+    public static void main(String[] args) throws InterruptedException {
+        String url = args.length > 0 ? args[0] : "http://localhost:8080/takeaways";
+        int rate = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+        if (rate <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("每秒请求数和发送线程数必须大于0");
+        }
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long total = (long) rate * seconds;
+        long start = System.nanoTime();
+        AtomicLong sequence = new AtomicLong();
+        LatencyRecorder[] recorders = new LatencyRecorder[threads];
+        AtomicLong rejected = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            LatencyRecorder recorder = new LatencyRecorder();
+            recorders[i] = recorder;
+            new Thread(() -> {
+                try {
+                    long seq;
+                    while ((seq = sequence.getAndIncrement()) < total) {
+                        long scheduled = start + seq * intervalNanos;
+                        long wait;
+                        while ((wait = scheduled - System.nanoTime()) > 0) {
+                            LockSupport.parkNanos(wait);
+                        }
+                        int status = post(url, "外卖" + seq);
+                        if (status > 0) {
+                            recorder.record(System.nanoTime() - scheduled);
+                        }
+                        if (status == UNPROCESSABLE_ENTITY) {
+                            rejected.incrementAndGet();
+                        } else if (status != HttpURLConnection.HTTP_OK) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "load-generator-" + i).start();
+        }
+        done.await();
+        long elapsedNanos = System.nanoTime() - start;
+
+        LatencyRecorder all = new LatencyRecorder();
+        for (LatencyRecorder recorder : recorders) {
+            all.merge(recorder);
+        }
+        long[] latencies = all.sorted();
+        System.out.println("响应数：" + latencies.length + "，被拒绝（422）：" + rejected.get() + "，失败：" + errors.get());
+        System.out.println("目标速率：" + rate + " 次/秒，实际吞吐量：" + latencies.length * TimeUnit.SECONDS.toNanos(1) / elapsedNanos + " 次/秒");
+        System.out.println("p50：" + micros(percentile(latencies, 0.50)) + " µs");
+        System.out.println("p99：" + micros(percentile(latencies, 0.99)) + " µs");
+        System.out.println("p999：" + micros(percentile(latencies, 0.999)) + " µs");
+    }
+
+    /**
+     * 发送一个下单请求，返回HTTP状态码，拿不到响应时返回-1
+     */
+    private static int post(String url, String name) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(url + "?name=" + URLEncoder.encode(name, "UTF-8")).openConnection();
+            connection.setRequestMethod("POST");
+            int status = connection.getResponseCode();
+            // 读完响应体，连接才能被keep-alive复用
+            try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (in != null) {
+                    byte[] buffer = new byte[256];
+                    while (in.read(buffer) != -1) {
+                        // 丢弃
+                    }
+                }
+            }
+            return status;
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            return -1;
+        }
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    /**
+     * 每个压测线程独占一个，避免记录延迟时再引入竞争
+     */
+    private static final class LatencyRecorder {
+
+        private long[] values = new long[1024];
+        private int size;
+
+        void record(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        void merge(LatencyRecorder other) {
+            for (int i = 0; i < other.size; i++) {
+                record(other.values[i]);
+            }
+        }
+
+        long[] sorted() {
+            long[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.zjx.designmodel.structural;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单日志：多线程追加吞吐量、组提交下的下单延迟、启动重放耗时
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/16 15:00
+ * @Version V1.0
+ **/
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderJournalBenchmark {
+
+    private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int REPLAY_ORDERS = 1_000_000;
+
+    @State(Scope.Benchmark)
+    public static class Journal {
+
+        File directory;
+        OrderJournal journal;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            directory = Files.createTempDirectory("order-journal").toFile();
+            journal = new OrderJournal(directory, SEGMENT_SIZE, 2, TimeUnit.MILLISECONDS);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws InterruptedException {
+            journal.close();
+            delete(directory);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Order {
+
+        Takeaway takeaway = new Takeaway();
+
+        @Setup(Level.Trial)
+        public void setup() {
+            takeaway.setName("泡椒 ");
+        }
+    }
+
+    /**
+     * 只追加不等刷盘
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(4)
+    public long append(Journal journal, Order order) {
+        return journal.journal.append(order.takeaway);
+    }
+
+    /**
+     * 追加并等待组提交，多个线程分摊一次刷盘
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(16)
+    public long appendAndAwaitDurable(Journal journal, Order order) throws InterruptedException {
+        long orderId = journal.journal.append(order.takeaway);
+        journal.journal.awaitDurable(orderId);
+        return orderId;
+    }
+
+    /**
+     * 预先写好REPLAY_ORDERS单，每次调用重新打开日志，测量重放耗时
+     */
+    @State(Scope.Benchmark)
+    public static class WrittenJournal {
+
+        File directory;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException, InterruptedException {
+            directory = Files.createTempDirectory("order-journal-replay").toFile();
+            try (OrderJournal journal = new OrderJournal(directory, SEGMENT_SIZE, 2, TimeUnit.MILLISECONDS)) {
+                Takeaway takeaway = new Takeaway();
+                takeaway.setName("泡椒 ");
+                for (int i = 0; i < REPLAY_ORDERS; i++) {
+                    takeaway.setX(i);
+                    journal.append(takeaway);
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            delete(directory);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public int replay(WrittenJournal written) throws IOException, InterruptedException {
+        try (OrderJournal journal = new OrderJournal(written.directory, SEGMENT_SIZE, 2, TimeUnit.MILLISECONDS)) {
+            return journal.size();
+        }
+    }
+
+    private static void delete(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
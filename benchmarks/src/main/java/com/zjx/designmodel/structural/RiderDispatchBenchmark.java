@@ -0,0 +1,84 @@
+package com.zjx.designmodel.structural;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 骑手调度：10万骑手在20km×20km范围内随机分布，测量派单延迟，以及派单和位置上报并发时的延迟
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/16 10:00
+ * @Version V1.0
+ **/
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RiderDispatchBenchmark {
+
+    private static final int RIDERS = 100_000;
+    private static final double AREA = 20_000;
+
+    @State(Scope.Benchmark)
+    public static class Riders {
+
+        RiderDispatcher dispatcher;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            dispatcher = new RiderDispatcher(250, 5_000);
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < RIDERS; i++) {
+                dispatcher.updatePosition("骑手" + i, random.nextDouble(AREA), random.nextDouble(AREA));
+            }
+        }
+    }
+
+    /**
+     * 派单后立即释放，骑手空闲比例保持不变
+     */
+    @Benchmark
+    public Rider assignNearest(Riders riders) {
+        return assignAndRelease(riders.dispatcher);
+    }
+
+    @Benchmark
+    @Group("withPositionUpdates")
+    @GroupThreads(1)
+    public Rider assignWhileRidersMove(Riders riders) {
+        return assignAndRelease(riders.dispatcher);
+    }
+
+    @Benchmark
+    @Group("withPositionUpdates")
+    @GroupThreads(1)
+    public void updatePosition(Riders riders) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        riders.dispatcher.updatePosition("骑手" + random.nextInt(RIDERS), random.nextDouble(AREA), random.nextDouble(AREA));
+    }
+
+    private static Rider assignAndRelease(RiderDispatcher dispatcher) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Rider rider = dispatcher.assignNearest(random.nextDouble(AREA), random.nextDouble(AREA));
+        if (rider != null) {
+            dispatcher.release(rider);
+        }
+        return rider;
+    }
+}
@@ -0,0 +1,139 @@
+package com.zjx.designmodel.structural;
+
+import com.zjx.designmodel.common.EventSink;
+import com.zjx.designmodel.common.EventSinks;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 结构型模式的热点路径
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/13 10:00
+ * @Version V1.0
+ **/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StructuralBenchmark {
+
+    /**
+     * 装饰链深度对price()/remark()的影响，以及编译成扁平结构后的效果
+     */
+    @State(Scope.Thread)
+    public static class DecoratorChain {
+
+        @Param({"1", "10", "100", "1000"})
+        public int depth;
+
+        AbstractFruitSalad chain;
+        CompiledFruitSalad compiled;
+        StringBuilder sb = new StringBuilder();
+
+        @Setup
+        public void setup() {
+            chain = buildChain(depth);
+            compiled = CompiledFruitSalad.compile(chain);
+        }
+    }
+
+    /**
+     * 猕猴桃、西瓜交替包装depth层
+     */
+    static AbstractFruitSalad buildChain(int depth) {
+        AbstractFruitSalad fruitSalad = new FruitSalad();
+        for (int i = 0; i < depth; i++) {
+            fruitSalad = (i & 1) == 0 ? new KiwiDecorator(fruitSalad) : new WaterMelonDecorator(fruitSalad);
+        }
+        return fruitSalad;
+    }
+
+    @Benchmark
+    public long decoratorChainPrice(DecoratorChain state) {
+        return state.chain.price();
+    }
+
+    @Benchmark
+    public long decoratorCompiledPrice(DecoratorChain state) {
+        return state.compiled.price();
+    }
+
+    @Benchmark
+    public String decoratorChainRemark(DecoratorChain state) {
+        return state.chain.remark();
+    }
+
+    @Benchmark
+    public void decoratorChainAppendRemark(DecoratorChain state, Blackhole blackhole) {
+        state.sb.setLength(0);
+        state.chain.appendRemark(state.sb);
+        blackhole.consume(state.sb);
+    }
+
+    /**
+     * 多线程共享同一个享元工厂，只读命中。享元都在setup里创建好，之后没有写入，HashMap的并发读是安全的。
+     */
+    @State(Scope.Benchmark)
+    public static class SharedFlyweights {
+
+        static final String[] KEYS = {"a", "b", "c", "d", "e", "f", "g", "h"};
+
+        FlyweightFactory factory;
+        EventSink previousSink;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            // 关闭输出，只测查找本身
+            previousSink = EventSinks.get();
+            EventSinks.set(EventSinks.NOOP);
+            factory = new FlyweightFactory();
+            for (String key : KEYS) {
+                factory.getFlyweight(key);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            EventSinks.set(previousSink);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class KeyCursor {
+        int next;
+
+        String nextKey() {
+            return SharedFlyweights.KEYS[next++ & (SharedFlyweights.KEYS.length - 1)];
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object flyweightLookupContended(SharedFlyweights flyweights, KeyCursor cursor) {
+        return flyweights.factory.getFlyweight(cursor.nextKey());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object flyweightLookupSingleThread(SharedFlyweights flyweights, KeyCursor cursor) {
+        return flyweights.factory.getFlyweight(cursor.nextKey());
+    }
+}
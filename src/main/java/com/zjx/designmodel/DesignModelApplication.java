@@ -0,0 +1,30 @@
+package com.zjx.designmodel;
+
+import com.zjx.designmodel.index.PatternComponentIndex;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * 启动类
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/12 14:30
+ * @Version V1.0
+ **/
+@SpringBootApplication
+public class DesignModelApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(DesignModelApplication.class, args);
+    }
+
+    /**
+     * 工厂和产品从编译期生成的索引读取，不扫描类路径
+     */
+    @Bean
+    public PatternComponentIndex patternComponentIndex() {
+        return PatternComponentIndex.load(DesignModelApplication.class.getClassLoader());
+    }
+}
@@ -0,0 +1,24 @@
+package com.zjx.designmodel.common;
+
+/**
+ * 事件输出
+ * <p>
+ * 各个模式示例里的热点方法原来都直接System.out.println，PrintStream内部有全局锁，多线程调用时吞吐量退化成单线程的控制台I/O。
+ * 统一改为发布到EventSink，由具体实现决定同步输出、异步输出还是直接丢弃。
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/12 10:20
+ * @Version V1.0
+ **/
+public interface EventSink {
+
+    void publish(String event);
+
+    /**
+     * 事件是否真的会被输出。拼接事件文本本身也要分配内存，热点路径上先判断再拼接
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+}
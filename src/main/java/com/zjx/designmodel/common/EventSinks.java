@@ -0,0 +1,67 @@
+package com.zjx.designmodel.common;
+
+import java.io.PrintStream;
+
+/**
+ * 全局共享的事件输出
+ * <p>
+ * 默认同步输出到System.out，保证各个示例main里的事件和System.out的打印顺序一致；
+ * 可以通过-Ddesignmodel.sink=console|ring|noop选择同步输出、异步输出或不输出，也可以在运行时调用set替换。
+ * 异步输出使用环形缓冲区，缓冲区满时挂起生产者，JVM退出前会把剩余事件输出完。
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/12 10:20
+ * @Version V1.0
+ **/
+public final class EventSinks {
+
+    /**
+     * 什么都不做，压测或不关心输出时使用
+     */
+    public static final EventSink NOOP = new EventSink() {
+        @Override
+        public void publish(String event) {
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    private static final int DEFAULT_CAPACITY = 8192;
+
+    private static volatile EventSink sink = create(System.getProperty("designmodel.sink", "console"));
+
+    private EventSinks() {
+    }
+
+    public static EventSink get() {
+        return sink;
+    }
+
+    public static void set(EventSink eventSink) {
+        sink = eventSink;
+    }
+
+    /**
+     * 同步输出，直接调用PrintStream
+     */
+    public static EventSink console(PrintStream out) {
+        return out::println;
+    }
+
+    private static EventSink create(String type) {
+        switch (type) {
+            case "noop":
+                return NOOP;
+            case "ring":
+                RingBufferEventSink ringBufferSink = new RingBufferEventSink(System.out, DEFAULT_CAPACITY);
+                Runtime.getRuntime().addShutdownHook(new Thread(ringBufferSink::close, "event-sink-shutdown"));
+                return ringBufferSink;
+            default:
+                return console(System.out);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.zjx.designmodel.common;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 各模式热点路径上的JFR自定义事件
+ * <p>
+ * 生产环境做性能分析时，JFR能看到GC、锁等待，却看不到业务层面发生了什么。
+ * 在享元创建/命中、外卖下单各阶段、单例初始化、原型克隆处提交自定义事件，就能在同一份录制里把延迟毛刺和GC、锁事件对上。
+ * <p>
+ * 通过-Ddesignmodel.jfr.enabled=true开启，默认关闭；运行中也可以调用setEnabled开关，比如排查问题时临时打开。
+ * 关闭时只多一次volatile读，不创建事件对象；开启后还可以在JFR的.jfc配置里按事件名单独开关。
+ * <p>
+ * jdk.jfr只在JDK 8u262及以后、JDK 11及以后才有，构建用的JDK版本由pom里的maven-enforcer-plugin检查。
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/13 15:00
+ * @Version V1.0
+ **/
+public final class JfrEvents {
+
+    private static volatile boolean enabled = Boolean.getBoolean("designmodel.jfr.enabled");
+
+    private JfrEvents() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 运行时开关，已经begin的阶段事件不受影响，照常在end时提交
+     */
+    public static void setEnabled(boolean enabled) {
+        JfrEvents.enabled = enabled;
+    }
+
+    public static void flyweight(String key, boolean hit) {
+        if (enabled) {
+            FlyweightEvent event = new FlyweightEvent();
+            if (event.shouldCommit()) {
+                event.key = key;
+                event.hit = hit;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * 开始一个外卖阶段，关闭时返回null
+     */
+    public static TakeawayStageEvent beginTakeawayStage(String takeaway, String stage) {
+        if (enabled) {
+            TakeawayStageEvent event = new TakeawayStageEvent();
+            event.takeaway = takeaway;
+            event.stage = stage;
+            event.begin();
+            return event;
+        }
+        return null;
+    }
+
+    public static void endTakeawayStage(TakeawayStageEvent event, boolean success) {
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.success = success;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * 开始初始化单例，关闭时返回null
+     */
+    public static SingletonInitEvent beginSingletonInit(Class<?> singletonClass) {
+        if (enabled) {
+            SingletonInitEvent event = new SingletonInitEvent();
+            event.singletonClass = singletonClass;
+            event.begin();
+            return event;
+        }
+        return null;
+    }
+
+    public static void endSingletonInit(SingletonInitEvent event) {
+        if (event != null) {
+            event.commit();
+        }
+    }
+
+    public static void prototypeCloned(Class<?> prototypeClass, boolean deep) {
+        if (enabled) {
+            PrototypeCloneEvent event = new PrototypeCloneEvent();
+            if (event.shouldCommit()) {
+                event.prototypeClass = prototypeClass;
+                event.deep = deep;
+                event.commit();
+            }
+        }
+    }
+
+    @Name("com.zjx.designmodel.Flyweight")
+    @Label("享元获取")
+    @Category({"Design Model", "Structural"})
+    @StackTrace(false)
+    public static class FlyweightEvent extends Event {
+
+        @Label("享元键")
+        String key;
+
+        @Label("是否命中")
+        boolean hit;
+    }
+
+    @Name("com.zjx.designmodel.TakeawayStage")
+    @Label("外卖下单阶段")
+    @Category({"Design Model", "Structural"})
+    @StackTrace(false)
+    public static class TakeawayStageEvent extends Event {
+
+        @Label("外卖")
+        String takeaway;
+
+        @Label("阶段")
+        String stage;
+
+        @Label("是否成功")
+        boolean success;
+    }
+
+    @Name("com.zjx.designmodel.SingletonInit")
+    @Label("单例初始化")
+    @Category({"Design Model", "Creational"})
+    public static class SingletonInitEvent extends Event {
+
+        @Label("单例类")
+        Class<?> singletonClass;
+    }
+
+    @Name("com.zjx.designmodel.PrototypeClone")
+    @Label("原型克隆")
+    @Category({"Design Model", "Creational"})
+    @StackTrace(false)
+    public static class PrototypeCloneEvent extends Event {
+
+        @Label("原型类")
+        Class<?> prototypeClass;
+
+        @Label("是否深克隆")
+        boolean deep;
+    }
+}
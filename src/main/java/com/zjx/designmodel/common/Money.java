@@ -0,0 +1,90 @@
+package com.zjx.designmodel.common;
+
+/**
+ * 定点数金额
+ * <p>
+ * 金额用double会有舍入误差，用BigDecimal则每次计算都要创建对象。这里直接用long表示以“分”为单位的金额，
+ * 所有运算都是基本类型运算，不分配任何对象；加、减、乘溢出时抛出ArithmeticException，而不是悄悄得到错误的金额。
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/18 16:00
+ * @Version V1.0
+ **/
+public final class Money {
+
+    /**
+     * 1元 = 100分
+     */
+    public static final long SCALE = 100;
+
+    public static final long ZERO = 0;
+
+    private Money() {
+    }
+
+    /**
+     * 整元金额
+     */
+    public static long of(long yuan) {
+        return Math.multiplyExact(yuan, SCALE);
+    }
+
+    /**
+     * 元和分，如of(5, 98)表示5.98元
+     */
+    public static long of(long yuan, int fen) {
+        if (fen < 0 || fen >= SCALE) {
+            throw new IllegalArgumentException("分必须在0到99之间：" + fen);
+        }
+        return Math.addExact(of(yuan), yuan < 0 ? -fen : fen);
+    }
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    /**
+     * 单价乘以数量
+     */
+    public static long multiply(long amount, long quantity) {
+        return Math.multiplyExact(amount, quantity);
+    }
+
+    /**
+     * 从浮点数金额转换，四舍五入到分，兼容旧的double价格
+     */
+    public static long fromDouble(double yuan) {
+        double fen = Math.rint(yuan * SCALE);
+        if (Double.isNaN(fen) || fen >= Long.MAX_VALUE || fen <= Long.MIN_VALUE) {
+            throw new ArithmeticException("金额超出范围：" + yuan);
+        }
+        return (long) fen;
+    }
+
+    /**
+     * 格式化为“元.分”，如598格式化为5.98
+     */
+    public static String format(long amount) {
+        StringBuilder sb = new StringBuilder(24);
+        appendTo(sb, amount);
+        return sb.toString();
+    }
+
+    public static void appendTo(StringBuilder sb, long amount) {
+        long yuan = amount / SCALE;
+        long fen = Math.abs(amount % SCALE);
+        if (amount < 0 && yuan == 0) {
+            sb.append('-');
+        }
+        sb.append(yuan).append('.');
+        if (fen < 10) {
+            sb.append('0');
+        }
+        sb.append(fen);
+    }
+}
@@ -0,0 +1,190 @@
+package com.zjx.designmodel.common;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 基于无锁环形缓冲区的异步事件输出
+ * <p>
+ * 多个生产者线程通过CAS抢占槽位写入事件，一个后台线程负责把事件批量写到PrintStream，
+ * 生产者线程不再争抢PrintStream的锁，也不用等待控制台I/O。
+ * <p>
+ * 每个槽位有一个序号：序号等于写入位置时槽位空闲，等于写入位置+1时槽位已写好等待消费，
+ * 消费后序号推进一圈（加上容量），留给下一轮的生产者。
+ * <p>
+ * 缓冲区满时的行为由{@link FullPolicy}决定：BLOCK让生产者挂起等待后台线程腾出空间，不会丢事件；
+ * DROP直接丢弃这个事件并计数，生产者永远不会被控制台I/O拖住，丢弃的数量可以通过{@link #getDropped()}查看。
+ * 关闭后的事件直接同步输出。
+ * 生产者检查完running、还没抢到槽位时恰好被关闭，后台线程可能已经退出，
+ * 所以写完槽位后还要再检查一次，发现已关闭就等后台线程结束，自己把剩下的事件输出。
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/12 10:20
+ * @Version V1.0
+ **/
+public class RingBufferEventSink implements EventSink, AutoCloseable {
+
+    private static final long IDLE_PARK_NANOS = 50_000L;
+    private static final long FULL_PARK_NANOS = 10_000L;
+
+    /**
+     * 缓冲区满时的处理策略
+     */
+    public enum FullPolicy {
+        /**
+         * 挂起生产者，直到后台线程腾出槽位
+         */
+        BLOCK,
+        /**
+         * 丢弃事件并计数
+         */
+        DROP
+    }
+
+    private final PrintStream out;
+    private final int mask;
+    private final String[] buffer;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final Thread drainer;
+    private final FullPolicy fullPolicy;
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean running = true;
+    /**
+     * 下一个要消费的位置，后台线程运行时只由它读写，退出后由持有this锁的线程接手
+     */
+    private long head;
+
+    public RingBufferEventSink(PrintStream out, int capacity) {
+        this(out, capacity, FullPolicy.BLOCK);
+    }
+
+    public RingBufferEventSink(PrintStream out, int capacity, FullPolicy fullPolicy) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity必须是2的幂：" + capacity);
+        }
+        this.out = out;
+        this.fullPolicy = fullPolicy;
+        this.mask = capacity - 1;
+        this.buffer = new String[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.drainer = new Thread(this::drainLoop, "event-sink-drainer");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    @Override
+    public void publish(String event) {
+        if (!running) {
+            out.println(event);
+            return;
+        }
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long diff = sequences.get(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    buffer[index] = event;
+                    // volatile写保证消费者看到序号变化时一定能看到事件
+                    sequences.set(index, position + 1);
+                    if (!running) {
+                        drainAfterClose();
+                    }
+                    return;
+                }
+            } else if (diff < 0) {
+                // 缓冲区满了
+                if (!running) {
+                    out.println(event);
+                    return;
+                }
+                if (fullPolicy == FullPolicy.DROP) {
+                    dropped.increment();
+                    return;
+                }
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+            }
+        }
+    }
+
+    private void drainLoop() {
+        StringBuilder batch = new StringBuilder();
+        while (true) {
+            if (drainAvailable(batch)) {
+                continue;
+            }
+            // 当前没有可消费的事件，把攒下的一批一次写出去
+            if (batch.length() > 0) {
+                out.print(batch);
+                out.flush();
+                batch.setLength(0);
+                continue;
+            }
+            if (!running && head == tail.get()) {
+                return;
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    /**
+     * 消费一个已写好的事件追加到batch，没有可消费的事件时返回false
+     */
+    private boolean drainAvailable(StringBuilder batch) {
+        int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) {
+            return false;
+        }
+        batch.append(buffer[index]).append(System.lineSeparator());
+        buffer[index] = null;
+        sequences.set(index, head + mask + 1);
+        head++;
+        return true;
+    }
+
+    /**
+     * 后台线程退出后，把之后才写进缓冲区的事件同步输出
+     */
+    private void drainAfterClose() {
+        try {
+            drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        synchronized (this) {
+            StringBuilder batch = new StringBuilder();
+            while (drainAvailable(batch)) {
+                // 逐个消费，直到遇到还没写好的槽位，那个槽位的生产者写完后会自己来输出
+            }
+            if (batch.length() > 0) {
+                out.print(batch);
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * 因缓冲区满被丢弃的事件数，BLOCK策略下始终为0
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * 停止后台线程，返回前会把已发布的事件全部输出
+     */
+    @Override
+    public void close() {
+        running = false;
+        drainAfterClose();
+    }
+}
@@ -0,0 +1,229 @@
+package com.zjx.designmodel.common;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 带存活时间的single-flight缓存
+ * <p>
+ * 1.同一个键并发请求时只有一个调用方真正执行loader，其余调用方拿到同一个future（single-flight）；
+ * 2.结果的存活时间（TTL）从结果完成的那一刻开始计时，还在执行中的条目永远不会过期；
+ * 3.条目数有上限，超出后按写入顺序淘汰最早的已完成条目，处理中的条目不淘汰（全是处理中的条目时允许暂时超出上限）；
+ * 4.异常结束的结果和不满足cacheable条件的结果不缓存，下次请求会重新执行。它们在结果完成前就已从缓存移除，
+ *   完成之后不会再被其他调用方拿到；
+ * 5.统计命中率。
+ * <p>
+ * 全程基于ConcurrentHashMap的原子操作，不需要全局锁。
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/18 15:00
+ * @Version V1.0
+ **/
+public class SingleFlightCache<K, V> {
+
+    private final long ttlNanos;
+    private final int maxSize;
+    private final Predicate<? super V> cacheable;
+    private final ConcurrentHashMap<K, Entry<K, V>> cache = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry<K, V>> insertionOrder = new ConcurrentLinkedQueue<>();
+    /**
+     * insertionOrder的大致长度，ConcurrentLinkedQueue.size()需要遍历整个队列
+     */
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public SingleFlightCache(long ttl, TimeUnit unit, int maxSize) {
+        this(ttl, unit, maxSize, value -> true);
+    }
+
+    /**
+     * @param cacheable 哪些结果可以缓存，不满足的结果只在处理中共享给并发的重复请求
+     */
+    public SingleFlightCache(long ttl, TimeUnit unit, int maxSize, Predicate<? super V> cacheable) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize必须大于0");
+        }
+        this.ttlNanos = unit.toNanos(ttl);
+        this.maxSize = maxSize;
+        this.cacheable = cacheable;
+    }
+
+    /**
+     * 同步获取，未命中时在调用线程里执行loader，loader抛出的RuntimeException和Error原样抛出
+     */
+    public V get(K key, Supplier<V> loader) {
+        CompletableFuture<V> result = getAsync(key, () -> {
+            CompletableFuture<V> loaded = new CompletableFuture<>();
+            loaded.complete(loader.get());
+            return loaded;
+        });
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 异步获取，未命中时调用loader发起请求。返回的future在loader的future完成时完成，同一个键的并发调用拿到的是同一个future
+     */
+    public CompletableFuture<V> getAsync(K key, Supplier<CompletableFuture<V>> loader) {
+        while (true) {
+            Entry<K, V> entry = cache.get(key);
+            if (entry != null && entry.isExpired()) {
+                cache.remove(key, entry);
+                entry = null;
+            }
+            if (entry != null) {
+                hits.increment();
+                return entry.result;
+            }
+            Entry<K, V> created = new Entry<>(key);
+            entry = cache.putIfAbsent(key, created);
+            if (entry != null) {
+                // 其他线程刚刚发起了同一个请求，等它的结果
+                if (entry.isExpired()) {
+                    continue;
+                }
+                hits.increment();
+                return entry.result;
+            }
+            misses.increment();
+            insertionOrder.offer(created);
+            queued.incrementAndGet();
+            evictIfNecessary();
+            load(created, loader);
+            return created.result;
+        }
+    }
+
+    /**
+     * 只有当前缓存的正是这个result时才移除，避免误删同一个键后来发起的新请求
+     */
+    public boolean remove(K key, CompletableFuture<V> result) {
+        Entry<K, V> entry = cache.get(key);
+        return entry != null && entry.result == result && cache.remove(key, entry);
+    }
+
+    /**
+     * 命中次数 / 总调用次数
+     */
+    public double hitRatio() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    private void load(Entry<K, V> entry, Supplier<CompletableFuture<V>> loader) {
+        CompletableFuture<V> source;
+        try {
+            source = loader.get();
+            if (source == null) {
+                throw new NullPointerException("loader返回了null");
+            }
+        } catch (Throwable e) {
+            // 包括Error：处理中的条目永不过期，不移除的话后续同一个键的请求会永远等下去
+            settle(entry, null, e);
+            return;
+        }
+        source.whenComplete((value, e) -> settle(entry, value, e));
+    }
+
+    /**
+     * 可以缓存的结果开始计算TTL；异常和不缓存的结果先移出缓存再完成future，拿到结果的调用方重试时不会再命中它
+     */
+    private void settle(Entry<K, V> entry, V value, Throwable failure) {
+        boolean cached = false;
+        try {
+            if (failure == null && cacheable.test(value)) {
+                entry.complete(value, ttlNanos);
+                cached = true;
+            }
+        } catch (Throwable e) {
+            failure = e;
+        } finally {
+            if (!cached) {
+                cache.remove(entry.key, entry);
+                if (failure == null) {
+                    entry.result.complete(value);
+                } else {
+                    entry.result.completeExceptionally(failure instanceof CompletionException && failure.getCause() != null
+                            ? failure.getCause() : failure);
+                }
+            }
+        }
+    }
+
+    private void evictIfNecessary() {
+        // 过期、失败被移除的条目还留在顺序队列里，积累到一定数量时整体清理一次，均摊下来是O(1)
+        if (queued.get() > maxSize * 2) {
+            insertionOrder.removeIf(queuedEntry -> {
+                boolean stale = cache.get(queuedEntry.key) != queuedEntry;
+                if (stale) {
+                    queued.decrementAndGet();
+                }
+                return stale;
+            });
+        }
+        // 最多检查当前条目数这么多次，剩下的全是处理中的条目时不再淘汰
+        int attempts = cache.size();
+        while (cache.size() > maxSize && attempts-- > 0) {
+            Entry<K, V> eldest = insertionOrder.poll();
+            if (eldest == null) {
+                return;
+            }
+            if (cache.get(eldest.key) != eldest) {
+                queued.decrementAndGet();
+            } else if (!eldest.completed) {
+                // 处理中的条目有调用方在等，淘汰掉会让重复请求再执行一次，放回队尾
+                insertionOrder.offer(eldest);
+            } else {
+                queued.decrementAndGet();
+                cache.remove(eldest.key, eldest);
+            }
+        }
+    }
+
+    private static final class Entry<K, V> {
+        private final K key;
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+        private long expireAt;
+        private volatile boolean completed;
+
+        Entry(K key) {
+            this.key = key;
+        }
+
+        /**
+         * 先写expireAt再写volatile的completed，读到completed为true时一定能看到expireAt
+         */
+        void complete(V value, long ttlNanos) {
+            expireAt = System.nanoTime() + ttlNanos;
+            completed = true;
+            result.complete(value);
+        }
+
+        boolean isExpired() {
+            return completed && System.nanoTime() - expireAt > 0;
+        }
+    }
+}
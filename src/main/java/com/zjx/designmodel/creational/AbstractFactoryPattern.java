@@ -1,5 +1,8 @@
 package com.zjx.designmodel.creational;
 
+import com.zjx.designmodel.common.EventSinks;
+import com.zjx.designmodel.index.PatternComponent;
+
 /**
  * 抽象工厂模式
  *
@@ -56,22 +59,24 @@ abstract class XiaoMi implements Phone{
 /**
  * HuaWeiP40类
  */
+@PatternComponent(PatternComponent.Role.PRODUCT)
 class HuaWeiP40 extends HuaWei {
 
     @Override
     public void call() {
-        System.out.println("HuaWeiP40 call");
+        EventSinks.get().publish("HuaWeiP40 call");
     }
 }
 
 /**
  * 小米8类
  */
+@PatternComponent(PatternComponent.Role.PRODUCT)
 class XiaoMi8 extends XiaoMi {
 
     @Override
     public void call() {
-        System.out.println("XiaoMi8 call");
+        EventSinks.get().publish("XiaoMi8 call");
     }
 }
 
@@ -87,6 +92,7 @@ interface PhoneFactory{
 /**
  * 手机具体工厂
  */
+@PatternComponent(PatternComponent.Role.FACTORY)
 class PhoneFactoryImpl implements PhoneFactory{
 
     @Override
@@ -1,9 +1,8 @@
 package com.zjx.designmodel.creational;
 
+import com.zjx.designmodel.common.Money;
 import lombok.Data;
 
-import java.math.BigDecimal;
-
 /**
  * 建造者模式
  *
@@ -34,7 +33,7 @@ import java.math.BigDecimal;
 public class BuildPattern{
 
     public static void main (String[] args){
-        ProductBuilder.Product product = new ProductBuilder().name("苹果").price(5.98).address("深圳").build();
+        ProductBuilder.Product product = new ProductBuilder().name("苹果").priceFen(Money.of(5, 98)).address("深圳").build();
         System.out.println(product);
     }
 }
@@ -42,13 +41,16 @@ public class BuildPattern{
 class ProductBuilder {
 
     private String name;
-    private double price;
+    /**
+     * 价格，单位：分，见Money
+     */
+    private long price;
     private String address;
 
     public static class Product {
 
         private String name;
-        private double price;
+        private long price;
         private String address;
 
         public Product(){}
@@ -63,7 +65,7 @@ class ProductBuilder {
         public String toString() {
             return "Product{" +
                     "name='" + name + '\'' +
-                    ", price='" + price + '\'' +
+                    ", price='" + Money.format(price) + '\'' +
                     ", address='" + address + '\'' +
                     '}';
         }
@@ -74,11 +76,24 @@ class ProductBuilder {
         return this;
     }
 
-    public ProductBuilder price(double price){
-        this.price = price;
+    /**
+     * 价格，单位：分，如Money.of(5, 98)
+     */
+    public ProductBuilder priceFen(long priceFen){
+        this.price = priceFen;
         return this;
     }
 
+    /**
+     * 价格，单位：元，四舍五入到分
+     *
+     * @deprecated 浮点数表示金额有精度问题，请使用priceFen(Money.of(yuan, fen))
+     */
+    @Deprecated
+    public ProductBuilder price(double yuan){
+        return priceFen(Money.fromDouble(yuan));
+    }
+
     public ProductBuilder address(String address){
         this.address = address;
         return this;
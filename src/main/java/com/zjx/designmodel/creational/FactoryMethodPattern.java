@@ -1,5 +1,8 @@
 package com.zjx.designmodel.creational;
 
+import com.zjx.designmodel.common.EventSinks;
+import com.zjx.designmodel.index.PatternComponent;
+
 /**
  * 工厂方法模式
  *
@@ -39,11 +42,12 @@ abstract class Animal {
 /**
  * 狗类
  */
+@PatternComponent(PatternComponent.Role.PRODUCT)
 class Dog extends Animal {
 
     @Override
     public void jump() {
-        System.out.println("狗在跳");
+        EventSinks.get().publish("狗在跳");
     }
 }
 
@@ -58,6 +62,7 @@ abstract class AnimalFactory {
 /**
  * 狗工厂类
  */
+@PatternComponent(PatternComponent.Role.FACTORY)
 class DogFactory extends AnimalFactory {
 
     @Override
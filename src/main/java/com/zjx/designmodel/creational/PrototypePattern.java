@@ -1,5 +1,6 @@
 package com.zjx.designmodel.creational;
 
+import com.zjx.designmodel.common.JfrEvents;
 import lombok.Data;
 import lombok.ToString;
 
@@ -69,10 +70,12 @@ class Student implements Cloneable {
     protected Object clone() throws CloneNotSupportedException {
         Student student = (Student) super.clone();
         // 引用类型深克隆
-        if (student != null && student.getBirthDay() != null) {
+        boolean deep = student != null && student.getBirthDay() != null;
+        if (deep) {
             Date birthDay = (Date) student.getBirthDay().clone();
             student.setBirthDay(birthDay);
         }
+        JfrEvents.prototypeCloned(Student.class, deep);
         return student;
     }
 }
@@ -1,5 +1,8 @@
 package com.zjx.designmodel.creational;
 
+import com.zjx.designmodel.common.EventSinks;
+import com.zjx.designmodel.index.PatternComponent;
+
 /**
  * 简单工厂方法模式
  *
@@ -35,17 +38,19 @@ abstract class Fruit {
 /**
  * 苹果类
  */
+@PatternComponent(PatternComponent.Role.PRODUCT)
 class Apple extends Fruit {
 
     @Override
     public void eat() {
-        System.out.println("吃苹果");
+        EventSinks.get().publish("吃苹果");
     }
 }
 
 /**
  * 水果工厂类
  */
+@PatternComponent(PatternComponent.Role.FACTORY)
 class FruitFactory {
 
     public Fruit produce(String name) {
@@ -19,6 +19,7 @@ package com.zjx.designmodel.creational;
  * @Version V1.0
  **/
 
+import com.zjx.designmodel.common.JfrEvents;
 import org.springframework.util.Assert;
 
 import java.io.*;
@@ -62,7 +63,9 @@ class Singleton {
         if (singleton == null) {
             synchronized (Singleton.class) {
                 if (singleton == null) {
+                    JfrEvents.SingletonInitEvent event = JfrEvents.beginSingletonInit(Singleton.class);
                     singleton = new Singleton();
+                    JfrEvents.endSingletonInit(event);
                 }
             }
         }
@@ -79,6 +82,10 @@ enum EnumSingleton {
 
     private Object data;
 
+    EnumSingleton() {
+        JfrEvents.endSingletonInit(JfrEvents.beginSingletonInit(EnumSingleton.class));
+    }
+
     public Object getData() {
         return data;
     }
@@ -176,7 +183,14 @@ class StaticInnerClassSingleton {
     }
 
     private static class InnerClass {
-        private static StaticInnerClassSingleton instance = new StaticInnerClassSingleton();
+        private static StaticInnerClassSingleton instance = create();
+
+        private static StaticInnerClassSingleton create() {
+            JfrEvents.SingletonInitEvent event = JfrEvents.beginSingletonInit(StaticInnerClassSingleton.class);
+            StaticInnerClassSingleton singleton = new StaticInnerClassSingleton();
+            JfrEvents.endSingletonInit(event);
+            return singleton;
+        }
     }
 
     public static StaticInnerClassSingleton getInstance() {
@@ -193,7 +207,14 @@ class HungrySingleton implements Serializable {
 
     private static final long serialVersionUID = -9109204420418751311L;
 
-    private final static HungrySingleton instance = new HungrySingleton();
+    private final static HungrySingleton instance = create();
+
+    private static HungrySingleton create() {
+        JfrEvents.SingletonInitEvent event = JfrEvents.beginSingletonInit(HungrySingleton.class);
+        HungrySingleton singleton = new HungrySingleton();
+        JfrEvents.endSingletonInit(event);
+        return singleton;
+    }
 
     private HungrySingleton() {
         // 添加判断逻辑来防御反射更改私有构造器权限
@@ -0,0 +1,37 @@
+package com.zjx.designmodel.index;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记工厂和产品类
+ * <p>
+ * 编译期由PatternComponentProcessor收集所有被标记的类，生成META-INF/design-model/components.index，
+ * 启动时直接读取索引，不需要扫描类路径。
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/18 10:00
+ * @Version V1.0
+ **/
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface PatternComponent {
+
+    Role value();
+
+    enum Role {
+        /**
+         * 工厂
+         */
+        FACTORY,
+        /**
+         * 产品
+         */
+        PRODUCT
+    }
+}
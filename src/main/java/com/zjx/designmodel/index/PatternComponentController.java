@@ -0,0 +1,36 @@
+package com.zjx.designmodel.index;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 工厂/产品清单接口
+ * <p>
+ * 直接返回启动时从编译期索引读到的类名，整个过程不扫描类路径。
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/18 10:00
+ * @Version V1.0
+ **/
+@RestController
+public class PatternComponentController {
+
+    private final PatternComponentIndex patternComponentIndex;
+
+    public PatternComponentController(PatternComponentIndex patternComponentIndex) {
+        this.patternComponentIndex = patternComponentIndex;
+    }
+
+    @GetMapping("/pattern-components")
+    public Map<String, List<String>> patternComponents() {
+        Map<String, List<String>> body = new LinkedHashMap<>();
+        body.put("factories", patternComponentIndex.getFactories());
+        body.put("products", patternComponentIndex.getProducts());
+        return body;
+    }
+}
@@ -0,0 +1,81 @@
+package com.zjx.designmodel.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 编译期生成的工厂/产品索引
+ * <p>
+ * 读取类路径上所有的META-INF/design-model/components.index，得到各角色的类名，整个过程不扫描类路径。
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/18 10:00
+ * @Version V1.0
+ **/
+public final class PatternComponentIndex {
+
+    public static final String LOCATION = "META-INF/design-model/components.index";
+
+    private final Map<PatternComponent.Role, List<String>> classNames;
+
+    private PatternComponentIndex(Map<PatternComponent.Role, List<String>> classNames) {
+        this.classNames = classNames;
+    }
+
+    public static PatternComponentIndex load(ClassLoader classLoader) {
+        Map<PatternComponent.Role, List<String>> classNames = new EnumMap<>(PatternComponent.Role.class);
+        for (PatternComponent.Role role : PatternComponent.Role.values()) {
+            classNames.put(role, new ArrayList<>());
+        }
+        try {
+            Enumeration<URL> urls = classLoader.getResources(LOCATION);
+            while (urls.hasMoreElements()) {
+                read(urls.nextElement(), classNames);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (Map.Entry<PatternComponent.Role, List<String>> entry : classNames.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        return new PatternComponentIndex(classNames);
+    }
+
+    private static void read(URL url, Map<PatternComponent.Role, List<String>> classNames) throws IOException {
+        try (InputStream in = url.openStream();
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf('=');
+                if (separator > 0) {
+                    PatternComponent.Role role = PatternComponent.Role.valueOf(line.substring(0, separator).trim());
+                    classNames.get(role).add(line.substring(separator + 1).trim());
+                }
+            }
+        }
+    }
+
+    public List<String> getClassNames(PatternComponent.Role role) {
+        return classNames.get(role);
+    }
+
+    public List<String> getFactories() {
+        return getClassNames(PatternComponent.Role.FACTORY);
+    }
+
+    public List<String> getProducts() {
+        return getClassNames(PatternComponent.Role.PRODUCT);
+    }
+}
@@ -0,0 +1,125 @@
+package com.zjx.designmodel.index;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 编译期生成工厂/产品索引
+ * <p>
+ * 每一轮收集被@PatternComponent标记的类，全部轮次结束后按“角色=类的二进制名”逐行写入索引文件。
+ * <p>
+ * 增量编译（IDE或只重新编译改动的文件）时，这次只能看到被重新编译的类，直接覆盖会把其余类从索引里丢掉。
+ * 所以写入前先读出输出目录里已有的索引，和Spring的CandidateComponentsIndexer一样合并：
+ * 已有条目对应的类还存在、仍然带着同样角色的@PatternComponent时保留，否则丢弃。
+ * 处理器声明支持所有注解（不认领任何注解），这样即使这次编译的文件都没有@PatternComponent也会运行，
+ * 删掉注解后索引能及时更新。
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/18 10:00
+ * @Version V1.0
+ **/
+@SupportedAnnotationTypes("*")
+public class PatternComponentProcessor extends AbstractProcessor {
+
+    private final Set<String> entries = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(PatternComponent.class)) {
+            if (element instanceof TypeElement) {
+                entries.add(entryOf((TypeElement) element));
+            }
+        }
+        if (roundEnv.processingOver()) {
+            List<String> existing = readExistingIndex();
+            for (String entry : existing) {
+                if (isStillAnnotated(entry)) {
+                    entries.add(entry);
+                }
+            }
+            // 原来有索引时即使合并后为空也要重写，否则删掉的注解会一直留在索引里
+            if (!entries.isEmpty() || !existing.isEmpty()) {
+                writeIndex();
+            }
+        }
+        // 不认领注解，不影响Lombok等其他处理器
+        return false;
+    }
+
+    private String entryOf(TypeElement type) {
+        PatternComponent component = type.getAnnotation(PatternComponent.class);
+        return component.value() + "=" + processingEnv.getElementUtils().getBinaryName(type);
+    }
+
+    /**
+     * 已有条目对应的类是否还存在，并且还带着同样角色的注解
+     */
+    private boolean isStillAnnotated(String entry) {
+        int separator = entry.indexOf('=');
+        if (separator <= 0) {
+            return false;
+        }
+        // 嵌套类的二进制名用$分隔，查找TypeElement要用规范名
+        String canonicalName = entry.substring(separator + 1).replace('$', '.');
+        TypeElement type = processingEnv.getElementUtils().getTypeElement(canonicalName);
+        return type != null && type.getAnnotation(PatternComponent.class) != null && entryOf(type).equals(entry);
+    }
+
+    private List<String> readExistingIndex() {
+        List<String> existing = new ArrayList<>();
+        try {
+            FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", PatternComponentIndex.LOCATION);
+            try (InputStream in = file.openInputStream();
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (!line.isEmpty()) {
+                        existing.add(line);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // 第一次编译或全量编译时还没有索引
+        }
+        return existing;
+    }
+
+    private void writeIndex() {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", PatternComponentIndex.LOCATION);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (String entry : entries) {
+                    writer.write(entry);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "写入" + PatternComponentIndex.LOCATION + "失败：" + e);
+        }
+    }
+}
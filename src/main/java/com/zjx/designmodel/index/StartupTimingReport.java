@@ -0,0 +1,69 @@
+package com.zjx.designmodel.index;
+
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动耗时对比：类路径扫描 vs 编译期索引
+ * <p>
+ * 两种方式都从冷启动的JVM里各运行一次，分别得到全部工厂和产品类并加载，输出耗时和找到的类数量。
+ * 用参数scan或index选择方式，不带参数时两种都跑（先跑的一方会承担类加载的预热成本，仅供参考）。
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/18 10:00
+ * @Version V1.0
+ **/
+public class StartupTimingReport {
+
+    private static final String BASE_PACKAGE = "com.zjx.designmodel";
+
+    public static void main(String[] args) throws ClassNotFoundException {
+        String mode = args.length > 0 ? args[0] : "all";
+        if (!"index".equals(mode)) {
+            scan();
+        }
+        if (!"scan".equals(mode)) {
+            index();
+        }
+    }
+
+    private static void scan() throws ClassNotFoundException {
+        long start = System.nanoTime();
+        ClassPathScanningCandidateComponentProvider provider = new ClassPathScanningCandidateComponentProvider(false) {
+            @Override
+            protected boolean isCandidateComponent(AnnotatedBeanDefinition beanDefinition) {
+                // 工厂和产品大多是包级私有类，不按Spring组件的规则过滤
+                return true;
+            }
+        };
+        provider.addIncludeFilter(new AnnotationTypeFilter(PatternComponent.class));
+        Set<BeanDefinition> candidates = provider.findCandidateComponents(BASE_PACKAGE);
+        for (BeanDefinition candidate : candidates) {
+            Class.forName(candidate.getBeanClassName());
+        }
+        report("类路径扫描", candidates.size(), System.nanoTime() - start);
+    }
+
+    private static void index() throws ClassNotFoundException {
+        long start = System.nanoTime();
+        PatternComponentIndex index = PatternComponentIndex.load(StartupTimingReport.class.getClassLoader());
+        int count = 0;
+        for (PatternComponent.Role role : PatternComponent.Role.values()) {
+            for (String className : index.getClassNames(role)) {
+                Class.forName(className);
+                count++;
+            }
+        }
+        report("编译期索引", count, System.nanoTime() - start);
+    }
+
+    private static void report(String mode, int count, long nanos) {
+        System.out.println(mode + "：找到" + count + "个工厂/产品类，耗时" + TimeUnit.NANOSECONDS.toMicros(nanos) + " µs");
+    }
+}
@@ -1,5 +1,16 @@
 package com.zjx.designmodel.structural;
 
+import com.zjx.designmodel.common.EventSinks;
+import com.zjx.designmodel.common.SingleFlightCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
 /**
  * 适配器模式
  * 将一个类的接口转换为期望的另一个接口，使原本不兼容的类可以一起工作。
@@ -28,6 +39,23 @@ public class AdapterPattern {
     public static void main (String[] args){
         Pie pie = new ApplePieAdaptor();
         pie.make();
+
+        // 批量适配器：短时间内的多个make()合并成一次Apple调用
+        try (BatchingApplePieAdaptor batchingPie = new BatchingApplePieAdaptor(new Apple(), 16, 5, TimeUnit.MILLISECONDS)) {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                futures.add(batchingPie.makeAsync());
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        }
+
+        // 缓存适配器：相同品种只查询一次
+        Apple apple = new Apple();
+        CachingAdaptor<String, Integer> quotes = new CachingAdaptor<>(apple::quote, 1, TimeUnit.MINUTES, 100);
+        quotes.get("红富士");
+        quotes.get("红富士");
+        quotes.get("国光");
+        System.out.println("命中率：" + quotes.hitRatio());
     }
 }
 
@@ -37,7 +65,22 @@ public class AdapterPattern {
 class Apple {
 
     public void addApple() {
-        System.out.println("添加点苹果");
+        EventSinks.get().publish("添加点苹果");
+    }
+
+    /**
+     * 批量添加苹果，一次调用完成count份
+     */
+    public void addApples(int count) {
+        EventSinks.get().publish("添加" + count + "份苹果");
+    }
+
+    /**
+     * 查询某个品种苹果的单价，结果只取决于品种
+     */
+    public int quote(String variety) {
+        EventSinks.get().publish("查询" + variety + "苹果单价");
+        return "红富士".equals(variety) ? 8 : 6;
     }
 }
 
@@ -55,7 +98,7 @@ interface Pie {
 class ApplePieAdaptor extends Apple implements Pie{
     @Override
     public void make() {
-        System.out.println("制作一个苹果派产线");
+        EventSinks.get().publish("制作一个苹果派产线");
         super.addApple();
     }
 }
@@ -69,7 +112,182 @@ class ApplePieAdaptor1 implements Pie{
 
     @Override
     public void make() {
-        System.out.println("制作一个苹果派产线");
+        EventSinks.get().publish("制作一个苹果派产线");
         apple.addApple();
     }
 }
+
+/**
+ * 批量对象适配器
+ * <p>
+ * 被适配者是很慢的遗留组件时，每次make()都单独调用一次Apple，吞吐量就被遗留系统卡住了。
+ * 这里把make()请求先放进队列，由后台线程攒批：攒够maxBatchSize个或者等待超过maxWait就调用一次addApples()，
+ * 再逐个完成每个请求对应的future。调用方依然面向Pie接口，make()会阻塞到所在批次完成，makeAsync()则直接返回future。
+ * <p>
+ * 遗留调用失败（包括抛出Error）时，这一批的future以异常结束，后台线程继续处理后面的请求。
+ */
+class BatchingApplePieAdaptor implements Pie, AutoCloseable {
+
+    /**
+     * 关闭信号，排在它前面的请求照常处理
+     */
+    private static final CompletableFuture<Void> CLOSE = new CompletableFuture<>();
+
+    private final Apple apple;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final BlockingQueue<CompletableFuture<Void>> requests = new LinkedBlockingQueue<>();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    public BatchingApplePieAdaptor(Apple apple, int maxBatchSize, long maxWait, TimeUnit unit) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize必须大于0");
+        }
+        this.apple = apple;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.worker = new Thread(this::drainLoop, "apple-pie-batcher");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    @Override
+    public void make() {
+        makeAsync().join();
+    }
+
+    public CompletableFuture<Void> makeAsync() {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new IllegalStateException("适配器已关闭"));
+            return future;
+        }
+        requests.offer(future);
+        // 入队的同时适配器被关闭了，自己把请求撤回来
+        if (!running && requests.remove(future)) {
+            future.completeExceptionally(new IllegalStateException("适配器已关闭"));
+        }
+        return future;
+    }
+
+    private void drainLoop() {
+        List<CompletableFuture<Void>> batch = new ArrayList<>(maxBatchSize);
+        try {
+            boolean closing = false;
+            while (!closing) {
+                CompletableFuture<Void> first = requests.take();
+                if (first == CLOSE) {
+                    break;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    CompletableFuture<Void> next = remaining > 0 ? requests.poll(remaining, TimeUnit.NANOSECONDS) : requests.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (next == CLOSE) {
+                        closing = true;
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // 已经攒下但还没处理的请求照常完成；线程退出后不再接收新请求，队列里剩下的以异常结束
+            flush(batch);
+            running = false;
+            failPending();
+        }
+    }
+
+    private void flush(List<CompletableFuture<Void>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            EventSinks.get().publish("制作" + batch.size() + "个苹果派产线");
+            apple.addApples(batch.size());
+            for (CompletableFuture<Void> future : batch) {
+                future.complete(null);
+            }
+        } catch (Throwable e) {
+            // 包括Error在内都要完成future，否则调用方会一直等下去
+            for (CompletableFuture<Void> future : batch) {
+                future.completeExceptionally(e);
+            }
+        } finally {
+            batch.clear();
+        }
+    }
+
+    private void failPending() {
+        CompletableFuture<Void> pending;
+        while ((pending = requests.poll()) != null) {
+            if (pending != CLOSE) {
+                pending.completeExceptionally(new IllegalStateException("适配器已关闭"));
+            }
+        }
+    }
+
+    /**
+     * 不再接收新请求，等关闭前已经提交的请求处理完再返回。不会打断正在进行的遗留调用
+     */
+    @Override
+    public void close() {
+        running = false;
+        requests.offer(CLOSE);
+        boolean interrupted = false;
+        while (worker.isAlive()) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        failPending();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
+
+/**
+ * 带结果缓存的通用对象适配器
+ * <p>
+ * 把昂贵的遗留服务包装成新接口时，同样的参数会被反复适配，每次都打到慢的被适配者上。
+ * 对幂等的调用（结果只取决于参数），可以把结果缓存起来。缓存本身（TTL、容量上限、single-flight、命中率）见SingleFlightCache，
+ * 适配器只负责把参数交给被适配者。
+ * <p>
+ * 调用失败的结果不缓存，下次调用会重试。
+ */
+class CachingAdaptor<K, V> {
+
+    private final Function<K, V> adaptee;
+    private final SingleFlightCache<K, V> cache;
+
+    public CachingAdaptor(Function<K, V> adaptee, long ttl, TimeUnit unit, int maxSize) {
+        this.adaptee = adaptee;
+        this.cache = new SingleFlightCache<>(ttl, unit, maxSize);
+    }
+
+    public V get(K key) {
+        return cache.get(key, () -> adaptee.apply(key));
+    }
+
+    /**
+     * 命中次数 / 总调用次数
+     */
+    public double hitRatio() {
+        return cache.hitRatio();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+}
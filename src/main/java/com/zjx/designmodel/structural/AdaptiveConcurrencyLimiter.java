@@ -0,0 +1,191 @@
+package com.zjx.designmodel.structural;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 自适应并发限制
+ * <p>
+ * 支付系统变慢时，如果照常把请求都压过去，在途请求会越积越多，尾延迟爆炸，最后谁都支付不成功。
+ * 限流器按实测延迟动态调整允许的并发数（AIMD）：
+ * 1.延迟在基准延迟（近期观测到的最小延迟）的tolerance倍以内时，每个成功的请求让上限增加1/limit，即每轮大约加1；
+ * 2.延迟超出或者调用异常时，上限乘以backoffRatio快速回落，回落后只有新发出的请求才能再次触发回落，避免同一波慢请求连续打压；
+ * 3.在途请求达到上限时立即拒绝，不排队等待。
+ * 这样并发数会稳定在支付系统实际能承受的水平附近，吞吐量不会因为过载而崩溃。
+ * <p>
+ * 业务上的失败（比如余额不足、拒付）说明支付系统正常工作，不算调用异常，不会触发回落。
+ * <p>
+ * 同时统计请求从进入外卖服务到开始支付的等待时间，配合拒绝数判断瓶颈在哪里。
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/17 15:00
+ * @Version V1.0
+ **/
+class AdaptiveConcurrencyLimiter {
+
+    /**
+     * 每观测这么多次就重新统计基准延迟，适应支付系统本身的变化
+     */
+    private static final int BASELINE_WINDOW = 1000;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double backoffRatio;
+    private final LongSupplier nanoClock;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder queueNanos = new LongAdder();
+    private final LongAccumulator maxQueueNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * 以下字段由this保护，只在请求结束时更新
+     */
+    private double limit;
+    private long baselineRtt = Long.MAX_VALUE;
+    private long windowMinRtt = Long.MAX_VALUE;
+    private int windowSamples;
+    private long lastBackoffNanos;
+
+    /**
+     * 当前上限，供tryAcquire无锁读取
+     */
+    private volatile int currentLimit;
+
+    AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance, double backoffRatio) {
+        this(initialLimit, minLimit, maxLimit, tolerance, backoffRatio, System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock 时钟，语义同System.nanoTime()，测试时可替换
+     */
+    AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance, double backoffRatio,
+                               LongSupplier nanoClock) {
+        if (minLimit <= 0 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("需要满足0 < minLimit <= initialLimit <= maxLimit");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.backoffRatio = backoffRatio;
+        this.nanoClock = nanoClock;
+        this.limit = initialLimit;
+        this.currentLimit = initialLimit;
+        this.lastBackoffNanos = nanoClock.getAsLong();
+    }
+
+    AdaptiveConcurrencyLimiter() {
+        this(20, 1, 1000, 2.0, 0.9);
+    }
+
+    /**
+     * 尝试获取执行许可，在途请求已达上限时返回null
+     *
+     * @param readyAtNanos 请求进入外卖服务的时间（System.nanoTime()），用于统计到达支付阶段前的等待时间
+     */
+    public Permit tryAcquire(long readyAtNanos) {
+        long now = nanoClock.getAsLong();
+        long waited = Math.max(0, now - readyAtNanos);
+        queueNanos.add(waited);
+        maxQueueNanos.accumulate(waited);
+        while (true) {
+            int current = inFlight.get();
+            if (current >= currentLimit) {
+                rejected.increment();
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                accepted.increment();
+                return new Permit(now);
+            }
+        }
+    }
+
+    /**
+     * 请求结束，归还许可并根据这次的延迟调整上限
+     *
+     * @param completedNormally 调用是否正常返回；抛出异常时传false。业务上的失败（如拒付）也是正常返回，应传true
+     */
+    public void release(Permit permit, boolean completedNormally) {
+        long rtt = nanoClock.getAsLong() - permit.startNanos;
+        inFlight.decrementAndGet();
+        synchronized (this) {
+            windowMinRtt = Math.min(windowMinRtt, rtt);
+            if (++windowSamples >= BASELINE_WINDOW || baselineRtt == Long.MAX_VALUE) {
+                baselineRtt = windowMinRtt;
+                windowMinRtt = Long.MAX_VALUE;
+                windowSamples = 0;
+            }
+            if (!completedNormally || rtt > baselineRtt * tolerance) {
+                if (permit.startNanos - lastBackoffNanos > 0) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastBackoffNanos = nanoClock.getAsLong();
+                }
+            } else {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            currentLimit = (int) limit;
+        }
+    }
+
+    public int getLimit() {
+        return currentLimit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * 到达支付阶段前的平均等待时间，单位：微秒
+     */
+    public long getAverageQueueMicros() {
+        long requests = accepted.sum() + rejected.sum();
+        return requests == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(queueNanos.sum() / requests);
+    }
+
+    /**
+     * 到达支付阶段前的最长等待时间，单位：微秒
+     */
+    public long getMaxQueueMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxQueueNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveConcurrencyLimiter{" +
+                "limit=" + getLimit() +
+                ", inFlight=" + getInFlight() +
+                ", accepted=" + getAccepted() +
+                ", rejected=" + getRejected() +
+                ", averageQueueMicros=" + getAverageQueueMicros() +
+                ", maxQueueMicros=" + getMaxQueueMicros() +
+                '}';
+    }
+
+    /**
+     * 执行许可，记录开始执行的时间
+     */
+    static final class Permit {
+
+        private final long startNanos;
+
+        Permit(long startNanos) {
+            this.startNanos = startNanos;
+        }
+    }
+}
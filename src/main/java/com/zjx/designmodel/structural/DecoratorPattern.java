@@ -1,5 +1,16 @@
 package com.zjx.designmodel.structural;
 
+import com.zjx.designmodel.common.Money;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
 /**
  * 装饰者模式
  * 在不改变原有对象的基础之上，将功能附加到对象上，提供了比继承更有弹性的替代方案。
@@ -39,7 +50,27 @@ public class DecoratorPattern {
         AbstractFruitSalad fruitSalad = new FruitSalad();
         fruitSalad = new WaterMelonDecorator(new KiwiDecorator(new KiwiDecorator(fruitSalad)));
 
-        System.out.println(fruitSalad.remark() + "价格是：" + fruitSalad.price());
+        System.out.println(fruitSalad.remark() + "价格是：" + Money.format(fruitSalad.price()));
+
+        // 招牌沙拉被很多订单共享，缓存之后再加配料只需计算新加的部分
+        AbstractFruitSalad signature = MemoizedFruitSalad.of(new KiwiDecorator(new KiwiDecorator(new FruitSalad())));
+        AbstractFruitSalad order = new WaterMelonDecorator(signature);
+        System.out.println(order.remark() + "价格是：" + Money.format(order.price()));
+
+        // 运行时动态添加和撤销装饰
+        FruitSaladPipeline pipeline = new FruitSaladPipeline(new FruitSalad());
+        pipeline.add("猕猴桃", KiwiDecorator::new);
+        pipeline.add("西瓜", WaterMelonDecorator::new);
+        System.out.println(pipeline.remark() + "价格是：" + Money.format(pipeline.price()));
+        pipeline.remove("猕猴桃");
+        System.out.println(pipeline.remark() + "价格是：" + Money.format(pipeline.price()));
+
+        // 配料很多时，追加到同一个StringBuilder并按配料汇总
+        StringBuilder sb = new StringBuilder();
+        CompiledFruitSalad.compile(fruitSalad).appendSummary(sb);
+        sb.append("价格是：");
+        Money.appendTo(sb, fruitSalad.price());
+        System.out.println(sb);
     }
 }
 
@@ -50,28 +81,71 @@ abstract class AbstractFruitSalad {
 
     public abstract String remark();
 
-    public abstract int price();
+    /**
+     * 价格，单位：分，见Money
+     */
+    public abstract long price();
+
+    /**
+     * 把描述追加到调用方提供的StringBuilder中。
+     * <p>
+     * 装饰链很长时，每层都用super.remark() + "..."拼接会产生n个中间字符串、O(n²)的字符拷贝；
+     * 统一追加到同一个StringBuilder里，渲染开销就是线性的。
+     */
+    public void appendRemark(StringBuilder sb) {
+        sb.append(remark());
+    }
 }
 
 /**
  * 抽象的装饰器
+ * <p>
+ * 子类只通过extraRemark()/extraPrice()描述当前这一层附加了什么，remark()、appendRemark()、price()都是final的：
+ * 外层装饰器走的是appendRemark，CompiledFruitSalad编译时只读extraRemark/extraPrice，
+ * 如果子类照老写法覆盖remark()或price()，被其他装饰器包装或者被编译时这部分会被悄悄跳过。
  */
 class AbstractDecorator extends AbstractFruitSalad {
 
-    private AbstractFruitSalad fruitSalad;
+    private final AbstractFruitSalad fruitSalad;
 
     public AbstractDecorator(AbstractFruitSalad fruitSalad) {
         this.fruitSalad = fruitSalad;
     }
 
     @Override
-    public String remark() {
-        return fruitSalad.remark();
+    public final String remark() {
+        StringBuilder sb = new StringBuilder();
+        appendRemark(sb);
+        return sb.toString();
+    }
+
+    @Override
+    public final void appendRemark(StringBuilder sb) {
+        fruitSalad.appendRemark(sb);
+        sb.append(extraRemark());
     }
 
     @Override
-    public int price() {
-        return fruitSalad.price();
+    public final long price() {
+        return Money.add(fruitSalad.price(), extraPrice());
+    }
+
+    /**
+     * 当前这一层装饰附加的描述，子类按需覆盖
+     */
+    protected String extraRemark() {
+        return "";
+    }
+
+    /**
+     * 当前这一层装饰附加的价格，单位：分，子类按需覆盖
+     */
+    protected long extraPrice() {
+        return Money.ZERO;
+    }
+
+    AbstractFruitSalad getFruitSalad() {
+        return fruitSalad;
     }
 }
 
@@ -85,8 +159,13 @@ class FruitSalad extends AbstractFruitSalad {
     }
 
     @Override
-    public int price() {
-        return 9;
+    public void appendRemark(StringBuilder sb) {
+        sb.append("水果（标准）\n");
+    }
+
+    @Override
+    public long price() {
+        return Money.of(9);
     }
 }
 
@@ -100,13 +179,13 @@ class KiwiDecorator extends AbstractDecorator {
     }
 
     @Override
-    public String remark() {
-        return super.remark() + "加份猕猴桃\n";
+    protected String extraRemark() {
+        return "加份猕猴桃\n";
     }
 
     @Override
-    public int price() {
-        return super.price() + 2;
+    protected long extraPrice() {
+        return Money.of(2);
     }
 }
 
@@ -119,13 +198,306 @@ class WaterMelonDecorator extends AbstractDecorator {
         super(fruitSalad);
     }
 
+    @Override
+    protected String extraRemark() {
+        return "加份西瓜\n";
+    }
+
+    @Override
+    protected long extraPrice() {
+        return Money.of(3);
+    }
+}
+
+/**
+ * 带缓存的装饰层
+ * <p>
+ * 菜单里同一份基础沙拉、同一段常用配料组合会被很多不同的装饰器再包装，每次price()都要把整条链重新走一遍。
+ * 在共享的子链外面套一层MemoizedFruitSalad，它本身不加配料、不加价，只把子链的price()/remark()缓存下来，
+ * 外层装饰器走到这一层就直接返回，重复查询菜单商品的价格就是常数时间。
+ * <p>
+ * 价格和描述放在同一个不可变的Cached里一起发布，读者只读一次引用，看到的价格和描述一定来自同一次计算。
+ * 每个Cached都带着计算开始时的版本号，invalidate()只需把版本号加一：
+ * 之前开始、之后才写回的计算结果版本号对不上，会被当作未命中重新计算，不会把旧值重新发布出去。
+ * <p>
+ * invalidate()只清除当前这一层的缓存，不会通知包在外面的装饰器或其它缓存层（装饰器只知道被装饰对象，不知道谁包装了自己）。
+ * 子链变化时，调用方要对从变化处到最外层之间的每个MemoizedFruitSalad都调用invalidate()；
+ * 需要运行时增删配料的场景更推荐使用FruitSaladPipeline这种整体替换快照的方式。
+ * <p>
+ * 它要覆盖price()/remark()返回缓存，所以不继承AbstractDecorator；CompiledFruitSalad编译时会穿过这一层。
+ */
+class MemoizedFruitSalad extends AbstractFruitSalad {
+
+    private final AbstractFruitSalad fruitSalad;
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicReference<Cached> cached = new AtomicReference<>();
+
+    public MemoizedFruitSalad(AbstractFruitSalad fruitSalad) {
+        this.fruitSalad = fruitSalad;
+    }
+
+    /**
+     * 已经带缓存的就不再重复包装
+     */
+    public static AbstractFruitSalad of(AbstractFruitSalad fruitSalad) {
+        if (fruitSalad instanceof MemoizedFruitSalad || fruitSalad instanceof CompiledFruitSalad) {
+            return fruitSalad;
+        }
+        return new MemoizedFruitSalad(fruitSalad);
+    }
+
+    @Override
+    public String remark() {
+        return current().remark;
+    }
+
+    @Override
+    public void appendRemark(StringBuilder sb) {
+        sb.append(current().remark);
+    }
+
+    @Override
+    public long price() {
+        return current().price;
+    }
+
+    /**
+     * 清除当前这一层的缓存，下次查询时重新沿装饰链计算；不会传递到外层，见类注释
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+    }
+
+    private Cached current() {
+        Cached snapshot = cached.get();
+        long expected = version.get();
+        if (snapshot != null && snapshot.version == expected) {
+            return snapshot;
+        }
+        // 并发下可能重复计算，结果相同；CAS失败说明别的线程已经写回了，以它为准即可
+        Cached fresh = new Cached(expected, fruitSalad.price(), fruitSalad.remark());
+        cached.compareAndSet(snapshot, fresh);
+        return fresh;
+    }
+
+    AbstractFruitSalad getFruitSalad() {
+        return fruitSalad;
+    }
+
+    private static final class Cached {
+        private final long version;
+        private final long price;
+        private final String remark;
+
+        Cached(long version, long price, String remark) {
+            this.version = version;
+            this.price = price;
+            this.remark = remark;
+        }
+    }
+}
+
+/**
+ * 编译后的水果沙拉
+ * <p>
+ * 装饰器层层嵌套时，每次price()/remark()都要沿着整条链递归调用，链越深调用越深，调用点也会变成多态（megamorphic）调用。
+ * 这里把一条装饰链“编译”成扁平结构：基础沙拉 + 每种配料的份数（按首次出现的顺序） + 预先算好的价格和描述，
+ * 编译只需遍历一次装饰链，之后price()和remark()都是O(1)，结果与原装饰链一致。
+ * <p>
+ * 装饰器在构造后不可变，所以编译结果可以放心复用。
+ */
+final class CompiledFruitSalad extends AbstractFruitSalad {
+
+    private final AbstractFruitSalad base;
+    private final Map<String, Integer> toppingCounts;
+    private final long price;
+    private final String remark;
+
+    private CompiledFruitSalad(AbstractFruitSalad base, Map<String, Integer> toppingCounts, long price, String remark) {
+        this.base = base;
+        this.toppingCounts = toppingCounts;
+        this.price = price;
+        this.remark = remark;
+    }
+
+    /**
+     * 把装饰链编译成扁平结构，非装饰器（如FruitSalad）会被当作基础沙拉原样保留
+     */
+    public static CompiledFruitSalad compile(AbstractFruitSalad fruitSalad) {
+        if (fruitSalad instanceof CompiledFruitSalad) {
+            return (CompiledFruitSalad) fruitSalad;
+        }
+        // 由外向内遍历，记录每一层装饰器，缓存层不加配料直接穿过，遍历结束时拿到的就是最里层的基础沙拉
+        List<AbstractDecorator> layers = new ArrayList<>();
+        AbstractFruitSalad current = fruitSalad;
+        while (true) {
+            if (current instanceof AbstractDecorator) {
+                AbstractDecorator decorator = (AbstractDecorator) current;
+                layers.add(decorator);
+                current = decorator.getFruitSalad();
+            } else if (current instanceof MemoizedFruitSalad) {
+                current = ((MemoizedFruitSalad) current).getFruitSalad();
+            } else {
+                break;
+            }
+        }
+        AbstractFruitSalad base = current;
+
+        // 由内向外累加，保证描述顺序与原装饰链一致
+        long price = base.price();
+        StringBuilder remark = new StringBuilder();
+        base.appendRemark(remark);
+        Map<String, Integer> toppingCounts = new LinkedHashMap<>();
+        for (int i = layers.size() - 1; i >= 0; i--) {
+            AbstractDecorator decorator = layers.get(i);
+            String extraRemark = decorator.extraRemark();
+            price = Money.add(price, decorator.extraPrice());
+            remark.append(extraRemark);
+            if (!extraRemark.isEmpty()) {
+                toppingCounts.merge(extraRemark, 1, Integer::sum);
+            }
+        }
+        return new CompiledFruitSalad(base, Collections.unmodifiableMap(toppingCounts), price, remark.toString());
+    }
+
+    public AbstractFruitSalad getBase() {
+        return base;
+    }
+
+    /**
+     * 每种配料（以其描述为键）各加了几份
+     */
+    public Map<String, Integer> getToppingCounts() {
+        return toppingCounts;
+    }
+
+    /**
+     * 按配料汇总渲染，相同配料合并成一行，如“2x 加份猕猴桃”，适合配料很多的大订单
+     */
+    public void appendSummary(StringBuilder sb) {
+        base.appendRemark(sb);
+        for (Map.Entry<String, Integer> topping : toppingCounts.entrySet()) {
+            sb.append(topping.getValue()).append("x ").append(topping.getKey());
+        }
+    }
+
+    @Override
+    public String remark() {
+        return remark;
+    }
+
+    @Override
+    public void appendRemark(StringBuilder sb) {
+        sb.append(remark);
+    }
+
+    @Override
+    public long price() {
+        return price;
+    }
+}
+
+/**
+ * 可动态增删装饰器的水果沙拉流水线
+ * <p>
+ * 嵌套构造出来的装饰链是不可变的，只能加不能撤；而线上要随时开关促销、附加费这类计价规则，又不能停下来重建对象。
+ * 流水线按顺序保存“具名的装饰步骤”，每次增删都在副本上修改，编译成CompiledFruitSalad后整体替换当前快照（写时复制）。
+ * <p>
+ * 读者只读一次volatile引用，全程无锁，看到的总是某个完整一致的快照；
+ * 需要同时读价格和描述时，先用snapshot()拿到快照再读，避免两次读取之间快照被替换。
+ */
+class FruitSaladPipeline extends AbstractFruitSalad {
+
+    private final AbstractFruitSalad base;
+    private final AtomicReference<Snapshot> current;
+
+    public FruitSaladPipeline(AbstractFruitSalad base) {
+        this.base = base;
+        this.current = new AtomicReference<>(new Snapshot(Collections.<Stage>emptyList(), CompiledFruitSalad.compile(base)));
+    }
+
+    /**
+     * 在流水线末尾追加一个装饰步骤，如pipeline.add("kiwi", KiwiDecorator::new)
+     */
+    public void add(String name, UnaryOperator<AbstractFruitSalad> decorator) {
+        while (true) {
+            Snapshot snapshot = current.get();
+            for (Stage stage : snapshot.stages) {
+                if (stage.name.equals(name)) {
+                    throw new IllegalArgumentException("装饰步骤" + name + "已存在");
+                }
+            }
+            List<Stage> stages = new ArrayList<>(snapshot.stages);
+            stages.add(new Stage(name, decorator));
+            if (current.compareAndSet(snapshot, build(stages))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 撤销指定的装饰步骤，不存在时返回false
+     */
+    public boolean remove(String name) {
+        while (true) {
+            Snapshot snapshot = current.get();
+            List<Stage> stages = new ArrayList<>(snapshot.stages);
+            if (!stages.removeIf(stage -> stage.name.equals(name))) {
+                return false;
+            }
+            if (current.compareAndSet(snapshot, build(stages))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 当前生效的快照
+     */
+    public CompiledFruitSalad snapshot() {
+        return current.get().compiled;
+    }
+
     @Override
     public String remark() {
-        return super.remark() + "加份西瓜\n";
+        return snapshot().remark();
     }
 
     @Override
-    public int price() {
-        return super.price() + 3;
+    public void appendRemark(StringBuilder sb) {
+        snapshot().appendRemark(sb);
+    }
+
+    @Override
+    public long price() {
+        return snapshot().price();
+    }
+
+    private Snapshot build(List<Stage> stages) {
+        AbstractFruitSalad fruitSalad = base;
+        for (Stage stage : stages) {
+            fruitSalad = stage.decorator.apply(fruitSalad);
+        }
+        return new Snapshot(Collections.unmodifiableList(stages), CompiledFruitSalad.compile(fruitSalad));
     }
-}
\ No newline at end of file
+
+    private static final class Stage {
+        private final String name;
+        private final UnaryOperator<AbstractFruitSalad> decorator;
+
+        Stage(String name, UnaryOperator<AbstractFruitSalad> decorator) {
+            this.name = name;
+            this.decorator = decorator;
+        }
+    }
+
+    private static final class Snapshot {
+        private final List<Stage> stages;
+        private final CompiledFruitSalad compiled;
+
+        Snapshot(List<Stage> stages, CompiledFruitSalad compiled) {
+            this.stages = stages;
+            this.compiled = compiled;
+        }
+    }
+}
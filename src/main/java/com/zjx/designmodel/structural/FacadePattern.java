@@ -1,5 +1,16 @@
 package com.zjx.designmodel.structural;
 
+import com.zjx.designmodel.common.EventSinks;
+import com.zjx.designmodel.common.JfrEvents;
+import com.zjx.designmodel.common.SingleFlightCache;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
 /**
  * 外观模式
  * 外观模式又叫门面模式，提供了统一得接口，用来访问子系统中的一群接口。
@@ -34,12 +45,57 @@ public class FacadePattern {
 
         TakeawayService takeawayService = new TakeawayService();
         takeawayService.takeOrder(takeaway);
+
+        // 接入骑手调度
+        RiderDispatcher riderDispatcher = new RiderDispatcher(500, 5_000);
+        riderDispatcher.updatePosition("骑手张三", 100, 200);
+        riderDispatcher.updatePosition("骑手李四", 1_500, 800);
+        Takeaway nearby = new Takeaway();
+        nearby.setName("酸菜鱼 ");
+        nearby.setX(1_200);
+        nearby.setY(900);
+        TakeawayService dispatching = new TakeawayService(new DeliveryService(riderDispatcher));
+        dispatching.takeOrder(nearby);
+        // 骑手送达后重新变为空闲，可以接下一单
+        dispatching.completeDelivery(nearby);
+
+        // 客户端带着同一个幂等键重试，只会真正下单一次
+        TakeawayService coalescing = new TakeawayService();
+        coalescing.enableDuplicateCoalescing(30, TimeUnit.SECONDS, 10_000);
+        Takeaway retried = new Takeaway();
+        retried.setName("小龙虾 ");
+        retried.setIdempotencyKey("order-10086");
+        coalescing.takeOrder(retried);
+        coalescing.takeOrder(retried);
+
+        // 按外卖名称分区，每个分区单线程处理
+        try (PartitionedTakeawayService partitioned = new PartitionedTakeawayService(4, 1024, TakeawayService::new)) {
+            for (String name : new String[]{"麻辣烫 ", "黄焖鸡 ", "麻辣烫 "}) {
+                Takeaway order = new Takeaway();
+                order.setName(name);
+                partitioned.submit(order).join();
+            }
+            for (PartitionStats stats : partitioned.stats()) {
+                System.out.println(stats);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 }
 
 class Takeaway {
 
     private String name;
+    /**
+     * 幂等键，客户端重试时携带相同的值，为空表示不做重复请求合并
+     */
+    private String idempotencyKey;
+    /**
+     * 取餐位置，平面坐标，单位：米
+     */
+    private double x;
+    private double y;
 
     public String getName() {
         return name;
@@ -48,12 +104,61 @@ class Takeaway {
     public void setName(String name) {
         this.name = name;
     }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public void setX(double x) {
+        this.x = x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public void setY(double y) {
+        this.y = y;
+    }
 }
 
 class OrderService {
 
+    private final OrderJournal orderJournal;
+
+    public OrderService() {
+        this(null);
+    }
+
+    /**
+     * 接入订单日志后，订单刷盘成功才算下单成功
+     */
+    public OrderService(OrderJournal orderJournal) {
+        this.orderJournal = orderJournal;
+    }
+
     public boolean placeAnOrder(Takeaway takeaway) {
-        System.out.println(takeaway.getName() + "下单成功");
+        if (orderJournal != null) {
+            try {
+                orderJournal.awaitDurable(orderJournal.append(takeaway));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (IllegalStateException e) {
+                // 日志已关闭或刷盘失败，订单没有持久化
+                EventSinks.get().publish(takeaway.getName() + "下单失败：" + e.getMessage());
+                return false;
+            }
+        }
+        EventSinks.get().publish(takeaway.getName() + "下单成功");
         return true;
     }
 }
@@ -61,29 +166,233 @@ class OrderService {
 class PayService {
 
     public boolean pay(Takeaway takeaway) {
-        System.out.println("商品" + takeaway.getName() + "支付成功");
+        EventSinks.get().publish("商品" + takeaway.getName() + "支付成功");
         return true;
     }
 }
 
 class DeliveryService {
 
+    private final RiderDispatcher riderDispatcher;
+    /**
+     * 派送中的订单和接单骑手，Takeaway没有重写equals，按对象本身区分订单
+     */
+    private final ConcurrentHashMap<Takeaway, Rider> inDelivery = new ConcurrentHashMap<>();
+    /**
+     * 暂时没有空闲骑手、等待派单的订单，按下单顺序排列，由自身加锁保护
+     */
+    private final ArrayDeque<Takeaway> pending = new ArrayDeque<>();
+
+    public DeliveryService() {
+        this(null);
+    }
+
+    /**
+     * 接入骑手调度后，按取餐位置分配最近的空闲骑手
+     */
+    public DeliveryService(RiderDispatcher riderDispatcher) {
+        this.riderDispatcher = riderDispatcher;
+    }
+
     public void delivery(Takeaway takeaway) {
-        System.out.println(takeaway.getName() + "已由骑手XX接单，订单派送中");
+        if (riderDispatcher == null) {
+            EventSinks.get().publish(takeaway.getName() + "已由骑手XX接单，订单派送中");
+            return;
+        }
+        Rider rider = riderDispatcher.assignNearest(takeaway.getX(), takeaway.getY());
+        if (rider != null) {
+            startDelivery(takeaway, rider);
+            return;
+        }
+        EventSinks.get().publish(takeaway.getName() + "附近暂无空闲骑手，等待派单");
+        synchronized (pending) {
+            pending.addLast(takeaway);
+        }
+        // 查找和入队之间可能刚好有骑手送达，而那次重新派单还没看到这个订单
+        dispatchPending();
+    }
+
+    /**
+     * 订单送达，接单骑手重新变为空闲，再给等待中的订单派单；不是通过骑手调度派送的订单直接忽略
+     */
+    public void completeDelivery(Takeaway takeaway) {
+        Rider rider = inDelivery.remove(takeaway);
+        if (rider != null) {
+            riderDispatcher.release(rider);
+            EventSinks.get().publish(takeaway.getName() + "已由" + rider.getId() + "送达");
+            dispatchPending();
+        }
+    }
+
+    /**
+     * 按下单顺序给等待中的订单派单，有新骑手上线时也可以调用
+     */
+    public void dispatchPending() {
+        if (riderDispatcher == null) {
+            return;
+        }
+        synchronized (pending) {
+            for (Iterator<Takeaway> it = pending.iterator(); it.hasNext(); ) {
+                Takeaway takeaway = it.next();
+                Rider rider = riderDispatcher.assignNearest(takeaway.getX(), takeaway.getY());
+                if (rider != null) {
+                    it.remove();
+                    startDelivery(takeaway, rider);
+                }
+            }
+        }
+    }
+
+    /**
+     * 等待派单的订单数
+     */
+    public int pendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    private void startDelivery(Takeaway takeaway, Rider rider) {
+        inDelivery.put(takeaway, rider);
+        EventSinks.get().publish(takeaway.getName() + "已由" + rider.getId() + "接单，订单派送中");
     }
 }
 
 class TakeawayService {
 
-    private OrderService orderService = new OrderService();
+    private OrderService orderService;
     private PayService payService = new PayService();
-    private DeliveryService deliveryService = new DeliveryService();
+    private DeliveryService deliveryService;
+    private AdaptiveConcurrencyLimiter payLimiter;
+    private SingleFlightCache<String, Boolean> duplicates;
+
+    public TakeawayService() {
+        this(new OrderService(), new DeliveryService());
+    }
+
+    public TakeawayService(DeliveryService deliveryService) {
+        this(new OrderService(), deliveryService);
+    }
+
+    public TakeawayService(OrderService orderService, DeliveryService deliveryService) {
+        this.orderService = orderService;
+        this.deliveryService = deliveryService;
+    }
 
-    public void takeOrder(Takeaway takeaway) {
-        if (orderService.placeAnOrder(takeaway)) {
-            if (payService.pay(takeaway)) {
-                deliveryService.delivery(takeaway);
+    /**
+     * 在支付阶段前加上自适应并发限制，支付系统过载时直接拒绝新订单
+     */
+    public TakeawayService(OrderService orderService, PayService payService, DeliveryService deliveryService,
+                           AdaptiveConcurrencyLimiter payLimiter) {
+        this.orderService = orderService;
+        this.payService = payService;
+        this.deliveryService = deliveryService;
+        this.payLimiter = payLimiter;
+    }
+
+    /**
+     * 开启重复请求合并。
+     * <p>
+     * 客户端重试很积极，同一个外卖在第一次请求还没处理完时可能又到了好几次，每次都会重新下单、支付、派送。
+     * 开启后按幂等键合并：处理中的重复请求直接等待第一次请求的结果，成功的订单在ttl内的重复请求直接返回成功，
+     * 缓存最多保留maxSize个幂等键。
+     * <p>
+     * 失败的订单（包括被支付限流拒绝的）和异常结束的订单不缓存，客户端重试时会重新下单。
+     */
+    public void enableDuplicateCoalescing(long ttl, TimeUnit unit, int maxSize) {
+        this.duplicates = new SingleFlightCache<>(ttl, unit, maxSize, Boolean.TRUE::equals);
+    }
+
+    /**
+     * 下单，返回订单是否走完了全部阶段。附近没有空闲骑手时订单进入待派单队列，也算成功，骑手送达上一单后按下单顺序派出
+     */
+    public boolean takeOrder(Takeaway takeaway) {
+        String key = takeaway.getIdempotencyKey();
+        if (duplicates == null || key == null) {
+            return doTakeOrder(takeaway);
+        }
+        return duplicates.get(key, () -> doTakeOrder(takeaway));
+    }
+
+    private boolean doTakeOrder(Takeaway takeaway) {
+        long acceptedAt = System.nanoTime();
+        if (placeAnOrder(takeaway)) {
+            if (pay(takeaway, acceptedAt)) {
+                delivery(takeaway);
+                return true;
             }
         }
+        return false;
+    }
+
+    /**
+     * 异步下单，下单、支付、派送三个阶段依次在executor上执行，调用线程不会被占用。
+     * 返回的结果表示订单是否走完了全部阶段。
+     */
+    public CompletableFuture<Boolean> takeOrderAsync(Takeaway takeaway, Executor executor) {
+        String key = takeaway.getIdempotencyKey();
+        if (duplicates == null || key == null) {
+            return doTakeOrderAsync(takeaway, executor);
+        }
+        return duplicates.getAsync(key, () -> doTakeOrderAsync(takeaway, executor));
+    }
+
+    private CompletableFuture<Boolean> doTakeOrderAsync(Takeaway takeaway, Executor executor) {
+        long acceptedAt = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> placeAnOrder(takeaway), executor)
+                .thenApplyAsync(placed -> placed && pay(takeaway, acceptedAt), executor)
+                .thenApplyAsync(paid -> {
+                    if (paid) {
+                        delivery(takeaway);
+                    }
+                    return paid;
+                }, executor);
+    }
+
+    private boolean placeAnOrder(Takeaway takeaway) {
+        JfrEvents.TakeawayStageEvent event = JfrEvents.beginTakeawayStage(takeaway.getName(), "下单");
+        boolean placed = orderService.placeAnOrder(takeaway);
+        JfrEvents.endTakeawayStage(event, placed);
+        return placed;
+    }
+
+    /**
+     * @param acceptedAtNanos 订单进入外卖服务的时间，用于统计到达支付阶段前的等待时间（下单耗时加上线程池排队）
+     */
+    private boolean pay(Takeaway takeaway, long acceptedAtNanos) {
+        JfrEvents.TakeawayStageEvent event = JfrEvents.beginTakeawayStage(takeaway.getName(), "支付");
+        boolean paid = payLimiter == null ? payService.pay(takeaway) : payWithLimit(takeaway, acceptedAtNanos);
+        JfrEvents.endTakeawayStage(event, paid);
+        return paid;
+    }
+
+    private boolean payWithLimit(Takeaway takeaway, long acceptedAtNanos) {
+        AdaptiveConcurrencyLimiter.Permit permit = payLimiter.tryAcquire(acceptedAtNanos);
+        if (permit == null) {
+            EventSinks.get().publish("支付繁忙，订单" + takeaway.getName() + "被拒绝");
+            return false;
+        }
+        // 拒付是正常的业务结果，只有抛出异常才算支付系统出了问题
+        boolean completedNormally = false;
+        try {
+            boolean paid = payService.pay(takeaway);
+            completedNormally = true;
+            return paid;
+        } finally {
+            payLimiter.release(permit, completedNormally);
+        }
+    }
+
+    /**
+     * 订单送达，释放接单骑手，并给等待中的订单派单
+     */
+    public void completeDelivery(Takeaway takeaway) {
+        deliveryService.completeDelivery(takeaway);
+    }
+
+    private void delivery(Takeaway takeaway) {
+        JfrEvents.TakeawayStageEvent event = JfrEvents.beginTakeawayStage(takeaway.getName(), "派送");
+        deliveryService.delivery(takeaway);
+        JfrEvents.endTakeawayStage(event, true);
     }
 }
\ No newline at end of file
@@ -1,5 +1,9 @@
 package com.zjx.designmodel.structural;
 
+import com.zjx.designmodel.common.EventSink;
+import com.zjx.designmodel.common.EventSinks;
+import com.zjx.designmodel.common.JfrEvents;
+
 import java.util.HashMap;
 
 /**
@@ -75,13 +79,12 @@ class ConcreteFlyweight implements Flyweight {
 
     ConcreteFlyweight(String key) {
         this.key = key;
-        System.out.println("具体享元" + key + "被创建！");
+        EventSinks.get().publish("具体享元" + key + "被创建！");
     }
 
     @Override
     public void operation(UnsharedConcreteFlyweight outState) {
-        System.out.print("具体享元" + key + "被调用，");
-        System.out.println("非享元信息是:" + outState.getInfo());
+        EventSinks.get().publish("具体享元" + key + "被调用，非享元信息是:" + outState.getInfo());
     }
 }
 
@@ -93,10 +96,16 @@ class FlyweightFactory {
     public Flyweight getFlyweight(String key) {
         Flyweight flyweight = (Flyweight) flyweights.get(key);
         if (flyweight != null) {
-            System.out.println("具体享元" + key + "已经存在，被成功获取！");
+            // 命中是热点路径，不输出时连事件文本也不拼接
+            EventSink events = EventSinks.get();
+            if (events.isEnabled()) {
+                events.publish("具体享元" + key + "已经存在，被成功获取！");
+            }
+            JfrEvents.flyweight(key, true);
         } else {
             flyweight = new ConcreteFlyweight(key);
             flyweights.put(key, flyweight);
+            JfrEvents.flyweight(key, false);
         }
         return flyweight;
     }
@@ -0,0 +1,417 @@
+package com.zjx.designmodel.structural;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * 订单日志
+ * <p>
+ * 下单时不想每单都走一次数据库，又希望订单不丢。这里把订单顺序追加到内存映射的段文件里：
+ * 1.追加只是往映射内存里写数据，不涉及系统调用；
+ * 2.后台线程定期把已写入的数据统一刷盘（组提交），需要持久化保证的调用方等待覆盖自己订单的那次刷盘即可，多个订单分摊一次fsync；
+ * 3.段文件写满后滚动到新文件，文件名是该段第一个订单号；
+ * 4.内存里维护订单号到订单的索引，启动时按顺序重放所有段文件重建索引，遇到未写完整（校验和不一致）的记录就停止。
+ * <p>
+ * 刷盘失败（磁盘满、I/O错误）后日志不再可信：失败原因被记录下来，正在等待和之后等待刷盘的调用方都会失败，新的追加直接拒绝。
+ * 日志的各种失败（刷盘失败、无法创建新段文件、已关闭）统一以IllegalStateException抛给调用方。
+ * <p>
+ * 映射内存要等GC回收MappedByteBuffer才会释放，滚动出去的旧段文件由刷盘线程主动解除映射，
+ * 它是除追加以外唯一可能还在访问旧段的线程，解除映射后不会再被访问。
+ * <p>
+ * 记录格式：[记录体长度 int][CRC32 int][订单号 long][x double][y double][名称 UTF-8]。
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/16 15:00
+ * @Version V1.0
+ **/
+class OrderJournal implements AutoCloseable {
+
+    private static final String SUFFIX = ".log";
+    private static final int HEADER_SIZE = 4 + 4;
+    private static final int FIXED_BODY_SIZE = 8 + 8 + 8;
+
+    /**
+     * 解除映射用的Unsafe.invokeCleaner，JDK 9才有；JDK 8上为null，改用DirectByteBuffer.cleaner()
+     */
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final File directory;
+    private final int segmentSize;
+    private final long flushIntervalNanos;
+    private final Map<Long, Takeaway> orders = new ConcurrentHashMap<>();
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Condition flushed = flushLock.newCondition();
+    private final Thread flusher;
+    private volatile boolean running = true;
+    /**
+     * 刷盘线程已完成关闭前的最后一次刷盘并退出
+     */
+    private volatile boolean stopped;
+    private volatile Throwable failure;
+
+    /**
+     * 以下字段由writeLock保护
+     */
+    private MappedByteBuffer segment;
+    /**
+     * 已滚动出去、等待刷盘线程解除映射的旧段
+     */
+    private final List<MappedByteBuffer> retired = new ArrayList<>();
+    private long nextOrderId = 1;
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * 已写入和已刷盘的最大订单号
+     */
+    private volatile long writtenOrderId;
+    private volatile long durableOrderId;
+
+    /**
+     * @param directory     段文件所在目录，已有的段文件会在构造时重放
+     * @param segmentSize   单个段文件大小，单位：字节
+     * @param flushInterval 组提交的最长间隔
+     */
+    OrderJournal(File directory, int segmentSize, long flushInterval, TimeUnit unit) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("无法创建目录：" + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.flushIntervalNanos = unit.toNanos(flushInterval);
+        replay();
+        this.writtenOrderId = nextOrderId - 1;
+        this.durableOrderId = writtenOrderId;
+        this.flusher = new Thread(this::flushLoop, "order-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * 追加一个订单，返回分配的订单号。返回时数据已在页缓存中，需要持久化保证时再调用awaitDurable
+     *
+     * @throws IllegalStateException 日志已关闭、刷盘失败过，或者无法创建新的段文件
+     */
+    public long append(Takeaway takeaway) {
+        byte[] name = takeaway.getName() == null ? new byte[0] : takeaway.getName().getBytes(StandardCharsets.UTF_8);
+        int bodySize = FIXED_BODY_SIZE + name.length;
+        if (HEADER_SIZE + bodySize > segmentSize) {
+            throw new IllegalArgumentException("订单记录超过段文件大小");
+        }
+        writeLock.lock();
+        try {
+            // 在锁内检查，close()在同一把锁下解除当前段的映射
+            checkWritable();
+            long orderId = nextOrderId;
+            if (segment == null || segment.remaining() < HEADER_SIZE + bodySize) {
+                try {
+                    roll(orderId);
+                } catch (UncheckedIOException e) {
+                    throw new IllegalStateException("订单日志无法创建段文件", e.getCause());
+                }
+            }
+            int start = segment.position();
+            segment.position(start + HEADER_SIZE);
+            segment.putLong(orderId).putDouble(takeaway.getX()).putDouble(takeaway.getY()).put(name);
+            int checksum = checksum(segment, start + HEADER_SIZE, bodySize);
+            // 长度最后写，重放时长度为0表示后面没有记录了
+            segment.putInt(start + 4, checksum);
+            segment.putInt(start, bodySize);
+
+            nextOrderId = orderId + 1;
+            orders.put(orderId, copyOf(takeaway));
+            writtenOrderId = orderId;
+            return orderId;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 等待订单所在的那次组提交完成。
+     * 关闭过程中调用也没关系，关闭前会把已写入的订单全部刷盘；刷盘失败时抛出IllegalStateException
+     */
+    public void awaitDurable(long orderId) throws InterruptedException {
+        if (durableOrderId >= orderId) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            while (durableOrderId < orderId) {
+                if (failure != null) {
+                    throw new IllegalStateException("订单日志刷盘失败", failure);
+                }
+                if (stopped) {
+                    throw new IllegalStateException("订单日志已关闭，订单" + orderId + "未刷盘");
+                }
+                flushed.await();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 返回的是副本，修改它不会影响日志里的订单
+     */
+    public Takeaway get(long orderId) {
+        Takeaway takeaway = orders.get(orderId);
+        return takeaway == null ? null : copyOf(takeaway);
+    }
+
+    public int size() {
+        return orders.size();
+    }
+
+    private void flushLoop() {
+        try {
+            while (running) {
+                long target = writtenOrderId;
+                if (target > durableOrderId) {
+                    flush(target);
+                }
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                long remaining;
+                while (running && (remaining = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(remaining);
+                }
+            }
+            flush(writtenOrderId);
+        } catch (RuntimeException | Error e) {
+            fail(e);
+        } finally {
+            flushLock.lock();
+            try {
+                stopped = true;
+                flushed.signalAll();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 记录刷盘失败并唤醒所有等待者，之后的追加和等待都会失败
+     */
+    private void fail(Throwable cause) {
+        flushLock.lock();
+        try {
+            if (failure == null) {
+                failure = cause;
+            }
+            flushed.signalAll();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void checkWritable() {
+        if (failure != null) {
+            throw new IllegalStateException("订单日志刷盘失败", failure);
+        }
+        if (!running) {
+            throw new IllegalStateException("订单日志已关闭");
+        }
+    }
+
+    private void flush(long target) {
+        MappedByteBuffer current;
+        List<MappedByteBuffer> toUnmap;
+        writeLock.lock();
+        try {
+            current = segment;
+            toUnmap = new ArrayList<>(retired);
+            retired.clear();
+        } finally {
+            writeLock.unlock();
+        }
+        if (current != null) {
+            // force只刷写脏页，和追加并发进行；滚动前的旧段已在roll中刷盘
+            current.force();
+        }
+        // 旧段已经刷过盘，追加也不会再访问它们；上一轮刷盘拿到的旧段引用在本线程里已经用完
+        for (MappedByteBuffer buffer : toUnmap) {
+            unmap(buffer);
+        }
+        flushLock.lock();
+        try {
+            if (target > durableOrderId) {
+                durableOrderId = target;
+            }
+            flushed.signalAll();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void roll(long firstOrderId) {
+        if (segment != null) {
+            try {
+                segment.force();
+            } catch (RuntimeException | Error e) {
+                fail(e);
+                throw e;
+            }
+        }
+        MappedByteBuffer next = map(new File(directory, String.format("%020d%s", firstOrderId, SUFFIX)), 0);
+        if (segment != null) {
+            // 刷盘线程可能正在force旧段，交给它来解除映射
+            retired.add(segment);
+        }
+        segment = next;
+    }
+
+    private MappedByteBuffer map(File file, int position) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            buffer.position(position);
+            return buffer;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 按文件名顺序重放所有段文件，恢复索引和写入位置
+     */
+    private void replay() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null || files.length == 0) {
+            return;
+        }
+        Arrays.sort(files);
+        for (int i = 0; i < files.length; i++) {
+            MappedByteBuffer buffer = map(files[i], 0);
+            int end = replaySegment(buffer);
+            if (i == files.length - 1) {
+                buffer.position(end);
+                segment = buffer;
+            } else {
+                unmap(buffer);
+            }
+        }
+    }
+
+    private int replaySegment(MappedByteBuffer buffer) {
+        int position = 0;
+        while (position + HEADER_SIZE <= segmentSize) {
+            int bodySize = buffer.getInt(position);
+            if (bodySize < FIXED_BODY_SIZE || position + HEADER_SIZE + bodySize > segmentSize) {
+                break;
+            }
+            int body = position + HEADER_SIZE;
+            if (checksum(buffer, body, bodySize) != buffer.getInt(position + 4)) {
+                break;
+            }
+            long orderId = buffer.getLong(body);
+            Takeaway takeaway = new Takeaway();
+            takeaway.setX(buffer.getDouble(body + 8));
+            takeaway.setY(buffer.getDouble(body + 16));
+            byte[] name = new byte[bodySize - FIXED_BODY_SIZE];
+            ByteBuffer nameBuffer = buffer.duplicate();
+            nameBuffer.position(body + FIXED_BODY_SIZE);
+            nameBuffer.get(name);
+            takeaway.setName(new String(name, StandardCharsets.UTF_8));
+            orders.put(orderId, takeaway);
+            nextOrderId = Math.max(nextOrderId, orderId + 1);
+            position = body + bodySize;
+        }
+        return position;
+    }
+
+    private int checksum(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer body = buffer.duplicate();
+        body.limit(offset + length).position(offset);
+        crc.reset();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    private static Takeaway copyOf(Takeaway takeaway) {
+        Takeaway copy = new Takeaway();
+        copy.setName(takeaway.getName());
+        copy.setX(takeaway.getX());
+        copy.setY(takeaway.getY());
+        return copy;
+    }
+
+    /**
+     * 停止后台刷盘线程，返回前把已写入的订单全部刷盘
+     */
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(flusher);
+        flusher.join();
+        writeLock.lock();
+        try {
+            for (MappedByteBuffer buffer : retired) {
+                unmap(buffer);
+            }
+            retired.clear();
+            if (segment != null) {
+                unmap(segment);
+                segment = null;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 立即解除映射，调用后不能再访问buffer。解除映射只是提前释放内存，失败了就等GC回收，不影响日志本身
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } else {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // 忽略，等GC回收
+        }
+    }
+}
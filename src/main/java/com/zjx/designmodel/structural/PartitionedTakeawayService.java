@@ -0,0 +1,223 @@
+package com.zjx.designmodel.structural;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 分区单写者的外卖下单服务
+ * <p>
+ * TakeawayService被多个线程共享时，它持有的任何订单状态都要加锁。这里换一种方式：
+ * 按路由键（默认是外卖名称，也可以是商家）把订单分到N个分区，每个分区只有一个线程，独占自己的TakeawayService和订单状态，
+ * 分区内部不需要任何锁，吞吐量随分区数（核数）线性增长。
+ * <p>
+ * 每个分区的队列有界，队列满时立即拒绝，不会无限堆积；stats()可以查看各分区的排队、处理、拒绝情况，
+ * imbalance()给出最忙分区与平均值之比，用来判断路由键是否需要调整（重新平衡）。
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/17 10:00
+ * @Version V1.0
+ **/
+class PartitionedTakeawayService implements AutoCloseable {
+
+    private final Partition[] partitions;
+    private final Function<Takeaway, String> routingKey;
+
+    public PartitionedTakeawayService(int partitionCount, int queueCapacity, Supplier<TakeawayService> takeawayServiceFactory) {
+        this(partitionCount, queueCapacity, takeawayServiceFactory, Takeaway::getName);
+    }
+
+    public PartitionedTakeawayService(int partitionCount, int queueCapacity, Supplier<TakeawayService> takeawayServiceFactory,
+                                      Function<Takeaway, String> routingKey) {
+        if (partitionCount <= 0) {
+            throw new IllegalArgumentException("partitionCount必须大于0");
+        }
+        this.partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition(i, queueCapacity, takeawayServiceFactory.get());
+        }
+        this.routingKey = routingKey;
+    }
+
+    /**
+     * 提交订单到所属分区。分区队列已满时返回的future以RejectedExecutionException结束
+     */
+    public CompletableFuture<Boolean> submit(Takeaway takeaway) {
+        return partitions[partitionOf(routingKey.apply(takeaway))].submit(takeaway);
+    }
+
+    /**
+     * 某个外卖在它所属分区里已成功下单的次数。和submit一样，分区队列已满时返回的future以RejectedExecutionException结束
+     */
+    public CompletableFuture<Integer> orderCount(Takeaway takeaway) {
+        return partitions[partitionOf(routingKey.apply(takeaway))].orderCount(takeaway.getName());
+    }
+
+    public PartitionStats[] stats() {
+        PartitionStats[] stats = new PartitionStats[partitions.length];
+        for (int i = 0; i < partitions.length; i++) {
+            stats[i] = partitions[i].stats();
+        }
+        return stats;
+    }
+
+    /**
+     * 最忙分区的提交量 / 平均提交量，1表示完全均衡
+     */
+    public double imbalance() {
+        long max = 0;
+        long total = 0;
+        for (Partition partition : partitions) {
+            long submitted = partition.submitted.sum();
+            max = Math.max(max, submitted);
+            total += submitted;
+        }
+        return total == 0 ? 1 : (double) max * partitions.length / total;
+    }
+
+    private int partitionOf(String key) {
+        int hash = key == null ? 0 : key.hashCode();
+        hash ^= hash >>> 16;
+        return (hash & Integer.MAX_VALUE) % partitions.length;
+    }
+
+    /**
+     * 等待已提交的订单处理完后关闭所有分区
+     */
+    @Override
+    public void close() throws InterruptedException {
+        for (Partition partition : partitions) {
+            partition.executor.shutdown();
+        }
+        for (Partition partition : partitions) {
+            partition.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static final class Partition {
+
+        private final int index;
+        private final ThreadPoolExecutor executor;
+        private final LongAdder submitted = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        /**
+         * 以下状态只由分区线程读写
+         */
+        private final TakeawayService takeawayService;
+        private final Map<String, Integer> orderCounts = new HashMap<>();
+        private volatile long completed;
+
+        Partition(int index, int queueCapacity, TakeawayService takeawayService) {
+            this.index = index;
+            this.takeawayService = takeawayService;
+            this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "takeaway-partition-" + index);
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.AbortPolicy());
+        }
+
+        CompletableFuture<Boolean> submit(Takeaway takeaway) {
+            CompletableFuture<Boolean> future = new CompletableFuture<>();
+            submitted.increment();
+            try {
+                executor.execute(() -> {
+                    try {
+                        boolean success = takeawayService.takeOrder(takeaway);
+                        if (success) {
+                            orderCounts.merge(takeaway.getName(), 1, Integer::sum);
+                        }
+                        future.complete(success);
+                    } catch (Throwable e) {
+                        // 包括Error在内都要完成future，否则调用方会一直等下去
+                        future.completeExceptionally(e);
+                    } finally {
+                        // 单写者，读-改-写不会丢失更新
+                        completed = completed + 1;
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                submitted.decrement();
+                rejected.increment();
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+
+        CompletableFuture<Integer> orderCount(String name) {
+            // 状态只能在分区线程里读，查询也排进分区队列
+            try {
+                return CompletableFuture.supplyAsync(() -> orderCounts.getOrDefault(name, 0), executor);
+            } catch (RejectedExecutionException e) {
+                CompletableFuture<Integer> future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+                return future;
+            }
+        }
+
+        PartitionStats stats() {
+            return new PartitionStats(index, executor.getQueue().size(), submitted.sum(), completed, rejected.sum());
+        }
+    }
+}
+
+/**
+ * 分区运行指标快照
+ */
+class PartitionStats {
+
+    private final int partition;
+    private final int queued;
+    private final long submitted;
+    private final long completed;
+    private final long rejected;
+
+    PartitionStats(int partition, int queued, long submitted, long completed, long rejected) {
+        this.partition = partition;
+        this.queued = queued;
+        this.submitted = submitted;
+        this.completed = completed;
+        this.rejected = rejected;
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    @Override
+    public String toString() {
+        return "PartitionStats{" +
+                "partition=" + partition +
+                ", queued=" + queued +
+                ", submitted=" + submitted +
+                ", completed=" + completed +
+                ", rejected=" + rejected +
+                '}';
+    }
+}
@@ -0,0 +1,206 @@
+package com.zjx.designmodel.structural;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 骑手调度
+ * <p>
+ * 派送阶段真正要做的是给订单分配骑手。高峰期如果每单都遍历全部骑手找最近的，延迟会随骑手数量线性增长。
+ * 这里把骑手位置放在内存中的网格索引里：平面按cellSize划分成格子，每个格子保存当前在格子里的骑手。
+ * 分配时从取餐点所在格子开始一圈一圈向外查找，找到的最近骑手比下一圈可能的最小距离还近时就可以停止，
+ * 通常只需要查看附近几个格子。
+ * <p>
+ * 位置更新和分配可以并发进行：格子用并发集合保存骑手，骑手是否空闲用CAS抢占，同一个骑手不会被分给两个订单。
+ * 骑手的坐标作为一个不可变的Position整体发布，查询时不会读到新x配旧y。
+ * 同一个骑手的位置由它自己的定位上报串行更新；骑手离开后变空的格子会被移除，格子数量不会随骑手走过的范围无限增长。
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/16 10:00
+ * @Version V1.0
+ **/
+class RiderDispatcher {
+
+    private final double cellSize;
+    private final double maxSearchRadius;
+    private final int maxSearchRings;
+    private final ConcurrentHashMap<Long, Set<Rider>> cells = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Rider> riders = new ConcurrentHashMap<>();
+
+    /**
+     * @param cellSize        格子边长，单位：米
+     * @param maxSearchRadius 最远派单距离，单位：米
+     */
+    RiderDispatcher(double cellSize, double maxSearchRadius) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("cellSize必须大于0");
+        }
+        this.cellSize = cellSize;
+        this.maxSearchRadius = maxSearchRadius;
+        this.maxSearchRings = (int) Math.ceil(maxSearchRadius / cellSize);
+    }
+
+    /**
+     * 上报骑手位置，骑手第一次上报时自动加入调度
+     */
+    public void updatePosition(String riderId, double x, double y) {
+        Rider rider = riders.computeIfAbsent(riderId, Rider::new);
+        Position previous = rider.position;
+        Position current = new Position(x, y, cellOf(x, y));
+        if (previous != null && previous.cell == current.cell) {
+            rider.position = current;
+            return;
+        }
+        // 先加入新格子再离开旧格子，查询时骑手不会凭空消失。
+        // 加入和离开都在compute里完成，和移除空格子互斥，不会加进一个刚被移除的集合
+        cells.compute(current.cell, (key, cell) -> {
+            Set<Rider> members = cell == null ? ConcurrentHashMap.newKeySet() : cell;
+            members.add(rider);
+            return members;
+        });
+        rider.position = current;
+        if (previous != null) {
+            cells.computeIfPresent(previous.cell, (key, cell) -> {
+                cell.remove(rider);
+                return cell.isEmpty() ? null : cell;
+            });
+        }
+    }
+
+    /**
+     * 给取餐点(x, y)分配最近的空闲骑手，最远派单距离内没有空闲骑手时返回null
+     */
+    public Rider assignNearest(double x, double y) {
+        while (true) {
+            Rider nearest = findNearestAvailable(x, y);
+            if (nearest == null) {
+                return null;
+            }
+            if (nearest.available.compareAndSet(true, false)) {
+                return nearest;
+            }
+            // 被其他订单抢先分配了，重新查找
+        }
+    }
+
+    /**
+     * 骑手送完订单，重新变为空闲
+     */
+    public void release(Rider rider) {
+        rider.available.set(true);
+    }
+
+    public int size() {
+        return riders.size();
+    }
+
+    /**
+     * 当前有骑手的格子数
+     */
+    int occupiedCells() {
+        return cells.size();
+    }
+
+    private Rider findNearestAvailable(double x, double y) {
+        int cx = coordinate(x);
+        int cy = coordinate(y);
+        Rider best = null;
+        double bestDistance = Double.MAX_VALUE;
+        for (int ring = 0; ring <= maxSearchRings; ring++) {
+            for (int dx = -ring; dx <= ring; dx++) {
+                // 只看第ring圈边上的格子，内部的格子前几圈已经看过了
+                int step = Math.abs(dx) == ring ? 1 : 2 * ring;
+                for (int dy = -ring; dy <= ring; dy += step) {
+                    Set<Rider> cell = cells.get(key(cx + dx, cy + dy));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (Rider rider : cell) {
+                        if (!rider.available.get()) {
+                            continue;
+                        }
+                        Position position = rider.position;
+                        double distance = Math.hypot(position.x - x, position.y - y);
+                        if (distance < bestDistance) {
+                            best = rider;
+                            bestDistance = distance;
+                        }
+                    }
+                }
+            }
+            // 第ring+1圈之外的骑手距离至少是ring个格子
+            if (best != null && bestDistance <= ring * cellSize) {
+                break;
+            }
+        }
+        // 最外圈的格子有一部分超出了最远派单距离，落在那部分的骑手不能派
+        return bestDistance <= maxSearchRadius ? best : null;
+    }
+
+    private long cellOf(double x, double y) {
+        return key(coordinate(x), coordinate(y));
+    }
+
+    private int coordinate(double value) {
+        return (int) Math.floor(value / cellSize);
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+}
+
+/**
+ * 骑手
+ */
+class Rider {
+
+    private final String id;
+    /**
+     * 最近一次上报的位置，还没上报过时为null
+     */
+    volatile Position position;
+    final AtomicBoolean available = new AtomicBoolean(true);
+
+    Rider(String id) {
+        this.id = id;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Position getPosition() {
+        return position;
+    }
+
+    public boolean isAvailable() {
+        return available.get();
+    }
+}
+
+/**
+ * 骑手位置，不可变，坐标和所在格子一起发布
+ */
+final class Position {
+
+    final double x;
+    final double y;
+    final long cell;
+
+    Position(double x, double y, long cell) {
+        this.x = x;
+        this.y = y;
+        this.cell = cell;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+}
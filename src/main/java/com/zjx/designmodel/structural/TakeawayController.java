@@ -0,0 +1,76 @@
+package com.zjx.designmodel.structural;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 外卖下单接口
+ * <p>
+ * 通过外观TakeawayService下单。接口返回CompletableFuture，Spring MVC会以Servlet异步请求处理：
+ * 请求线程提交任务后立即归还给容器，下单、支付、派送都在独立的线程池里执行，完成后再写回响应。
+ * <p>
+ * 客户端重试时带上相同的Idempotency-Key请求头，重复的请求会合并到同一次下单。
+ * <p>
+ * 支付阶段前的自适应并发限制由takeaway.pay-limiter.*配置，enabled=false时不限制。
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/12 14:30
+ * @Version V1.0
+ **/
+@RestController
+public class TakeawayController {
+
+    private final TakeawayService takeawayService;
+    private final ExecutorService executor;
+
+    public TakeawayController(@Value("${takeaway.executor-threads:8}") int executorThreads,
+                              @Value("${takeaway.idempotency.ttl-seconds:30}") long idempotencyTtlSeconds,
+                              @Value("${takeaway.idempotency.max-keys:10000}") int idempotencyMaxKeys,
+                              @Value("${takeaway.pay-limiter.enabled:true}") boolean payLimiterEnabled,
+                              @Value("${takeaway.pay-limiter.initial-limit:20}") int payLimiterInitialLimit,
+                              @Value("${takeaway.pay-limiter.min-limit:1}") int payLimiterMinLimit,
+                              @Value("${takeaway.pay-limiter.max-limit:1000}") int payLimiterMaxLimit,
+                              @Value("${takeaway.pay-limiter.tolerance:2.0}") double payLimiterTolerance,
+                              @Value("${takeaway.pay-limiter.backoff-ratio:0.9}") double payLimiterBackoffRatio) {
+        this.executor = Executors.newFixedThreadPool(executorThreads);
+        AdaptiveConcurrencyLimiter payLimiter = payLimiterEnabled
+                ? new AdaptiveConcurrencyLimiter(payLimiterInitialLimit, payLimiterMinLimit, payLimiterMaxLimit,
+                payLimiterTolerance, payLimiterBackoffRatio)
+                : null;
+        this.takeawayService = new TakeawayService(new OrderService(), new PayService(), new DeliveryService(), payLimiter);
+        this.takeawayService.enableDuplicateCoalescing(idempotencyTtlSeconds, TimeUnit.SECONDS, idempotencyMaxKeys);
+    }
+
+    @PostMapping("/takeaways")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> takeOrder(@RequestParam("name") String name,
+                                                                            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        Takeaway takeaway = new Takeaway();
+        takeaway.setName(name);
+        takeaway.setIdempotencyKey(idempotencyKey);
+        return takeawayService.takeOrderAsync(takeaway, executor).thenApply(success -> {
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("name", name);
+            body.put("success", success);
+            return new ResponseEntity<>(body, success ? HttpStatus.OK : HttpStatus.UNPROCESSABLE_ENTITY);
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,92 @@
+package com.zjx.designmodel.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * 热点方法的内存分配预算
+ * <p>
+ * 通过com.sun.management.ThreadMXBean的线程分配计数器统计每次调用分配的字节数，
+ * 和allocation-budget.properties里记录的预算（键为“名称.bytes”）比较，超出预算测试失败。
+ * <p>
+ * 分配字节数与机器负载无关，适合作为构建门禁；平均耗时受CI机器影响太大，只写进失败信息供参考，不参与判定。
+ * <p>
+ * 测量期间偶尔发生的JIT编译、去优化会让某一轮多出零星分配，所以分几轮测量，取分配最少的一轮。
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/13 17:00
+ * @Version V1.0
+ **/
+public final class AllocationBudget {
+
+    private static final int WARMUP_CALLS = 200_000;
+    private static final int ROUNDS = 5;
+    private static final int CALLS_PER_ROUND = 200_000;
+    private static final Properties BUDGETS = loadBudgets();
+
+    private AllocationBudget() {
+    }
+
+    /**
+     * 被测调用，返回值会被累加起来，防止JIT把整个调用当作死代码消除
+     */
+    public interface Call {
+        long run();
+    }
+
+    public static void assertWithinBudget(String name, Call call) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue("当前JVM不支持线程内存分配统计", bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        String maxBytes = BUDGETS.getProperty(name + ".bytes");
+        assertNotNull(name + "没有记录预算", maxBytes);
+
+        long sink = 0;
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            sink += call.run();
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long minBytes = Long.MAX_VALUE;
+        long minElapsed = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long bytesBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int i = 0; i < CALLS_PER_ROUND; i++) {
+                sink += call.run();
+            }
+            long elapsed = System.nanoTime() - start;
+            long bytesAfter = threadMXBean.getThreadAllocatedBytes(threadId);
+            minBytes = Math.min(minBytes, bytesAfter - bytesBefore);
+            minElapsed = Math.min(minElapsed, elapsed);
+        }
+
+        long bytesPerCall = Math.round((double) minBytes / CALLS_PER_ROUND);
+        long budget = Long.parseLong(maxBytes.trim());
+        assertTrue(String.format("%s：%d 字节/次，超出分配预算%d字节（%.1f ns/次，%d）",
+                name, bytesPerCall, budget, (double) minElapsed / CALLS_PER_ROUND, sink), bytesPerCall <= budget);
+    }
+
+    private static Properties loadBudgets() {
+        Properties budgets = new Properties();
+        try (InputStream in = AllocationBudget.class.getResourceAsStream("/allocation-budget.properties")) {
+            if (in == null) {
+                throw new IllegalStateException("找不到allocation-budget.properties");
+            }
+            budgets.load(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("读取allocation-budget.properties失败", e);
+        }
+        return budgets;
+    }
+}
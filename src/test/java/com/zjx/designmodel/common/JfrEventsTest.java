@@ -0,0 +1,116 @@
+package com.zjx.designmodel.common;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JfrEvents的单元测试：运行时开关，以及开启后事件确实写进了JFR录制
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/13 15:00
+ * @Version V1.0
+ **/
+public class JfrEventsTest {
+
+    private boolean previouslyEnabled;
+
+    @Before
+    public void rememberSwitch() {
+        previouslyEnabled = JfrEvents.isEnabled();
+    }
+
+    @After
+    public void restoreSwitch() {
+        JfrEvents.setEnabled(previouslyEnabled);
+    }
+
+    @Test
+    public void disabledSwitchCreatesNoEvents() {
+        JfrEvents.setEnabled(false);
+
+        assertNull(JfrEvents.beginTakeawayStage("外卖", "下单"));
+        assertNull(JfrEvents.beginSingletonInit(Object.class));
+        // 关闭时begin返回null，end要能直接接收
+        JfrEvents.endTakeawayStage(null, true);
+        JfrEvents.endSingletonInit(null);
+    }
+
+    @Test
+    public void switchCanBeFlippedAtRuntime() {
+        JfrEvents.setEnabled(true);
+        assertTrue(JfrEvents.isEnabled());
+        assertNotNull(JfrEvents.beginTakeawayStage("外卖", "下单"));
+
+        JfrEvents.setEnabled(false);
+        assertFalse(JfrEvents.isEnabled());
+        assertNull(JfrEvents.beginTakeawayStage("外卖", "下单"));
+    }
+
+    @Test
+    public void enabledEventsAreCommittedToRecording() throws IOException {
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable("com.zjx.designmodel.Flyweight");
+            recording.enable("com.zjx.designmodel.TakeawayStage");
+            recording.start();
+
+            JfrEvents.setEnabled(false);
+            JfrEvents.flyweight("关闭时", true);
+
+            JfrEvents.setEnabled(true);
+            JfrEvents.flyweight("开启时", false);
+            JfrEvents.endTakeawayStage(JfrEvents.beginTakeawayStage("泡椒", "支付"), true);
+
+            recording.stop();
+            events = read(recording);
+        }
+
+        List<RecordedEvent> flyweights = ofType(events, "com.zjx.designmodel.Flyweight");
+        assertEquals(1, flyweights.size());
+        assertEquals("开启时", flyweights.get(0).getString("key"));
+        assertFalse(flyweights.get(0).getBoolean("hit"));
+
+        List<RecordedEvent> stages = ofType(events, "com.zjx.designmodel.TakeawayStage");
+        assertEquals(1, stages.size());
+        assertEquals("泡椒", stages.get(0).getString("takeaway"));
+        assertEquals("支付", stages.get(0).getString("stage"));
+        assertTrue(stages.get(0).getBoolean("success"));
+    }
+
+    private static List<RecordedEvent> read(Recording recording) throws IOException {
+        Path file = Files.createTempFile("jfr-events-test", ".jfr");
+        try {
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static List<RecordedEvent> ofType(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> result = new ArrayList<>();
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name)) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,164 @@
+package com.zjx.designmodel.common;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * RingBufferEventSink的单元测试
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/12 10:20
+ * @Version V1.0
+ **/
+public class RingBufferEventSinkTest {
+
+    @Test
+    public void publishesEveryEventInOrderForSingleProducer() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        RingBufferEventSink sink = new RingBufferEventSink(new PrintStream(bytes, true), 4);
+        for (int i = 0; i < 100; i++) {
+            sink.publish("event-" + i);
+        }
+        sink.close();
+
+        String[] lines = lines(bytes);
+        assertEquals(100, lines.length);
+        for (int i = 0; i < 100; i++) {
+            assertEquals("event-" + i, lines[i]);
+        }
+    }
+
+    @Test
+    public void eventsPublishedAfterCloseAreWrittenDirectly() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        RingBufferEventSink sink = new RingBufferEventSink(new PrintStream(bytes, true), 8);
+        sink.publish("before");
+        sink.close();
+        sink.publish("after");
+
+        String[] lines = lines(bytes);
+        assertEquals(2, lines.length);
+        assertEquals("before", lines[0]);
+        assertEquals("after", lines[1]);
+    }
+
+    @Test
+    public void noEventIsLostWhenClosingWhileProducersArePublishing() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            RingBufferEventSink sink = new RingBufferEventSink(new PrintStream(bytes, true), 16);
+            int producers = 4;
+            int perProducer = 2_000;
+            CountDownLatch started = new CountDownLatch(producers);
+            List<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                Thread thread = new Thread(() -> {
+                    started.countDown();
+                    for (int i = 0; i < perProducer; i++) {
+                        sink.publish(producer + "-" + i);
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            started.await();
+            sink.close();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            Set<String> seen = new HashSet<>();
+            for (String line : lines(bytes)) {
+                seen.add(line);
+            }
+            assertEquals(producers * perProducer, seen.size());
+        }
+    }
+
+    @Test
+    public void blockPolicyParksProducerUntilSpaceIsFreed() throws InterruptedException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CountDownLatch release = new CountDownLatch(1);
+        RingBufferEventSink sink = new RingBufferEventSink(new PrintStream(gated(bytes, release), true), 2,
+                RingBufferEventSink.FullPolicy.BLOCK);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 50; i++) {
+                sink.publish("event-" + i);
+            }
+        });
+        producer.start();
+        // 后台线程卡在输出上，缓冲区写满后生产者只能等待
+        producer.join(200);
+        assertTrue(producer.isAlive());
+
+        release.countDown();
+        producer.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(producer.isAlive());
+        sink.close();
+
+        assertEquals(50, lines(bytes).length);
+        assertEquals(0, sink.getDropped());
+    }
+
+    @Test
+    public void dropPolicyCountsEventsThatDoNotFit() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CountDownLatch release = new CountDownLatch(1);
+        RingBufferEventSink sink = new RingBufferEventSink(new PrintStream(gated(bytes, release), true), 2,
+                RingBufferEventSink.FullPolicy.DROP);
+        // 后台线程卡在输出上时发布不会阻塞，放不下的事件被丢弃
+        for (int i = 0; i < 100; i++) {
+            sink.publish("event-" + i);
+        }
+        assertTrue(sink.getDropped() > 0);
+
+        release.countDown();
+        sink.close();
+        assertEquals(100, lines(bytes).length + sink.getDropped());
+    }
+
+    /**
+     * 在release放行之前，写操作一直阻塞
+     */
+    private static OutputStream gated(ByteArrayOutputStream target, CountDownLatch release) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                synchronized (target) {
+                    target.write(b, off, len);
+                }
+            }
+        };
+    }
+
+    private static String[] lines(ByteArrayOutputStream bytes) {
+        String text = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        return text.isEmpty() ? new String[0] : text.split(System.lineSeparator());
+    }
+}
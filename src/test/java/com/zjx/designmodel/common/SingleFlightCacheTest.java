@@ -0,0 +1,194 @@
+package com.zjx.designmodel.common;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * SingleFlightCache的单元测试
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/18 16:00
+ * @Version V1.0
+ **/
+public class SingleFlightCacheTest {
+
+    @Test
+    public void concurrentCallersShareInFlightResult() {
+        SingleFlightCache<String, Integer> cache = new SingleFlightCache<>(1, TimeUnit.MINUTES, 10);
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<Integer> source = new CompletableFuture<>();
+
+        CompletableFuture<Integer> first = cache.getAsync("k", () -> {
+            loads.incrementAndGet();
+            return source;
+        });
+        CompletableFuture<Integer> second = cache.getAsync("k", () -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture(2);
+        });
+
+        assertSame(first, second);
+        source.complete(1);
+        assertEquals(Integer.valueOf(1), second.join());
+        assertEquals(1, loads.get());
+        assertEquals(0.5, cache.hitRatio(), 0.0);
+    }
+
+    @Test
+    public void ttlStartsWhenResultCompletes() throws InterruptedException {
+        SingleFlightCache<String, Integer> cache = new SingleFlightCache<>(50, TimeUnit.MILLISECONDS, 10);
+        CompletableFuture<Integer> source = new CompletableFuture<>();
+        cache.getAsync("k", () -> source);
+
+        // 处理时间超过ttl，处理中的条目不能过期
+        Thread.sleep(100);
+        source.complete(1);
+        assertEquals(Integer.valueOf(1), cache.get("k", () -> 2));
+
+        Thread.sleep(100);
+        assertEquals(Integer.valueOf(2), cache.get("k", () -> 2));
+    }
+
+    @Test
+    public void exceptionalResultIsNotCached() {
+        SingleFlightCache<String, Integer> cache = new SingleFlightCache<>(1, TimeUnit.MINUTES, 10);
+        try {
+            cache.get("k", () -> {
+                throw new IllegalStateException("服务不可用");
+            });
+            fail("loader的异常应当抛给调用方");
+        } catch (IllegalStateException expected) {
+            assertEquals(0, cache.size());
+        }
+        assertEquals(Integer.valueOf(1), cache.get("k", () -> 1));
+    }
+
+    @Test
+    public void errorFromLoaderFailsCallersAndIsNotCached() throws Exception {
+        SingleFlightCache<String, Integer> cache = new SingleFlightCache<>(1, TimeUnit.MINUTES, 10);
+        try {
+            cache.get("k", () -> {
+                throw new AssertionError("loader出错");
+            });
+            fail("loader的Error应当抛给调用方");
+        } catch (AssertionError expected) {
+            assertEquals("loader出错", expected.getMessage());
+        }
+        assertEquals(0, cache.size());
+        // 重试不能挂住，而是重新执行loader
+        assertEquals(Integer.valueOf(1), cache.getAsync("k", () -> CompletableFuture.completedFuture(1)).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void errorFromAsyncSourceFailsWaitersAndIsNotCached() throws Exception {
+        SingleFlightCache<String, Integer> cache = new SingleFlightCache<>(1, TimeUnit.MINUTES, 10);
+        CompletableFuture<Integer> source = new CompletableFuture<>();
+        CompletableFuture<Integer> waiter = cache.getAsync("k", () -> source);
+
+        source.completeExceptionally(new AssertionError("下游出错"));
+        try {
+            waiter.get(5, TimeUnit.SECONDS);
+            fail("等待者应当拿到异常");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof AssertionError);
+        }
+        assertEquals(0, cache.size());
+        assertEquals(Integer.valueOf(2), cache.getAsync("k", () -> CompletableFuture.completedFuture(2)).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void nullFutureFromLoaderIsTreatedAsFailure() {
+        SingleFlightCache<String, Integer> cache = new SingleFlightCache<>(1, TimeUnit.MINUTES, 10);
+        assertTrue(cache.getAsync("k", () -> null).isCompletedExceptionally());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void uncacheableResultIsSharedWhileInFlightButNotAfterwards() {
+        SingleFlightCache<String, Boolean> cache = new SingleFlightCache<>(1, TimeUnit.MINUTES, 10, Boolean.TRUE::equals);
+        CompletableFuture<Boolean> source = new CompletableFuture<>();
+        CompletableFuture<Boolean> first = cache.getAsync("k", () -> source);
+        CompletableFuture<Boolean> duplicate = cache.getAsync("k", () -> CompletableFuture.completedFuture(true));
+        assertSame(first, duplicate);
+
+        source.complete(false);
+        assertFalse(duplicate.join());
+        assertEquals(0, cache.size());
+        assertTrue(cache.get("k", () -> true));
+        assertTrue(cache.get("k", () -> false));
+    }
+
+    @Test
+    public void removeOnlyEvictsTheGivenResult() {
+        SingleFlightCache<String, Integer> cache = new SingleFlightCache<>(1, TimeUnit.MINUTES, 10);
+        CompletableFuture<Integer> stale = cache.getAsync("k", () -> CompletableFuture.completedFuture(1));
+        assertTrue(cache.remove("k", stale));
+        CompletableFuture<Integer> fresh = cache.getAsync("k", () -> CompletableFuture.completedFuture(2));
+
+        // 旧结果的迟到清理不能把新请求的结果删掉
+        assertFalse(cache.remove("k", stale));
+        assertSame(fresh, cache.getAsync("k", () -> CompletableFuture.completedFuture(3)));
+    }
+
+    @Test
+    public void inFlightEntriesAreNotEvicted() {
+        SingleFlightCache<String, Integer> cache = new SingleFlightCache<>(1, TimeUnit.MINUTES, 1);
+        CompletableFuture<Integer> source = new CompletableFuture<>();
+        CompletableFuture<Integer> inFlight = cache.getAsync("a", () -> source);
+        cache.get("b", () -> 2);
+        cache.get("c", () -> 3);
+
+        // a还在处理中，重复请求依然拿到同一个future
+        assertSame(inFlight, cache.getAsync("a", () -> CompletableFuture.completedFuture(10)));
+        source.complete(1);
+        assertEquals(Integer.valueOf(1), inFlight.join());
+
+        cache.get("d", () -> 4);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void repeatedFailuresDoNotGrowInsertionOrder() throws Exception {
+        SingleFlightCache<String, Integer> cache = new SingleFlightCache<>(1, TimeUnit.MINUTES, 4);
+        for (int i = 0; i < 10_000; i++) {
+            final int attempt = i;
+            try {
+                cache.get("k" + i, () -> {
+                    throw new IllegalStateException("失败" + attempt);
+                });
+                fail("loader的异常应当抛给调用方");
+            } catch (IllegalStateException expected) {
+                // 失败的结果不缓存
+            }
+        }
+        Field field = SingleFlightCache.class.getDeclaredField("insertionOrder");
+        field.setAccessible(true);
+        assertTrue(((Collection<?>) field.get(cache)).size() <= 9);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void evictsOldestEntryBeyondMaxSize() {
+        SingleFlightCache<String, Integer> cache = new SingleFlightCache<>(1, TimeUnit.MINUTES, 2);
+        cache.get("a", () -> 1);
+        cache.get("b", () -> 2);
+        cache.get("c", () -> 3);
+
+        assertEquals(2, cache.size());
+        assertEquals(Integer.valueOf(10), cache.get("a", () -> 10));
+        assertEquals(Integer.valueOf(3), cache.get("c", () -> 30));
+    }
+}
@@ -0,0 +1,33 @@
+package com.zjx.designmodel.creational;
+
+import com.zjx.designmodel.common.Money;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * ProductBuilder的价格单位
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/9 11:46
+ * @Version V1.0
+ **/
+public class BuildPatternTest {
+
+    @Test
+    public void priceFenTakesAmountInFen() {
+        ProductBuilder.Product product = new ProductBuilder().name("苹果").priceFen(Money.of(5, 98)).address("深圳").build();
+        assertEquals("Product{name='苹果', price='5.98', address='深圳'}", product.toString());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void deprecatedPriceStillTakesYuan() {
+        assertEquals(new ProductBuilder().priceFen(Money.of(5, 98)).build().toString(),
+                new ProductBuilder().price(5.98).build().toString());
+        // 整数字面量也按元处理，不会被当成分
+        assertEquals(new ProductBuilder().priceFen(Money.of(5)).build().toString(),
+                new ProductBuilder().price(5).build().toString());
+    }
+}
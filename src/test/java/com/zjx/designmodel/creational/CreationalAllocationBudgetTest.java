@@ -0,0 +1,58 @@
+package com.zjx.designmodel.creational;
+
+import com.zjx.designmodel.common.EventSink;
+import com.zjx.designmodel.common.EventSinks;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.zjx.designmodel.common.AllocationBudget.assertWithinBudget;
+
+/**
+ * 创建型模式热点方法的分配预算
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/13 17:00
+ * @Version V1.0
+ **/
+public class CreationalAllocationBudgetTest {
+
+    private EventSink previousSink;
+
+    @Before
+    public void silenceEvents() {
+        // 只统计方法本身，不统计事件输出
+        previousSink = EventSinks.get();
+        EventSinks.set(EventSinks.NOOP);
+    }
+
+    @After
+    public void restoreEvents() {
+        EventSinks.set(previousSink);
+    }
+
+    @Test
+    public void singletonGetInstance() {
+        assertWithinBudget("singleton.getInstance", () -> Singleton.getInstance() == null ? 0 : 1);
+    }
+
+    @Test
+    public void fruitFactoryProduce() {
+        FruitFactory fruitFactory = new FruitFactory();
+        assertWithinBudget("fruitFactory.produce", () -> fruitFactory.produce("apple") == null ? 0 : 1);
+    }
+
+    @Test
+    public void dogFactoryProduce() {
+        AnimalFactory dogFactory = new DogFactory();
+        assertWithinBudget("dogFactory.produce", () -> dogFactory.produce() == null ? 0 : 1);
+    }
+
+    @Test
+    public void phoneFactoryProduce() {
+        PhoneFactory phoneFactory = new PhoneFactoryImpl();
+        assertWithinBudget("phoneFactory.getHuaWei", () -> phoneFactory.getHuaWei() == null ? 0 : 1);
+        assertWithinBudget("phoneFactory.getXiaoMi", () -> phoneFactory.getXiaoMi() == null ? 0 : 1);
+    }
+}
@@ -0,0 +1,154 @@
+package com.zjx.designmodel.index;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * PatternComponentProcessor的单元测试：用javac真正编译源码，检查增量编译时索引的合并和过期条目的清理
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/18 10:00
+ * @Version V1.0
+ **/
+public class PatternComponentProcessorTest {
+
+    private JavaCompiler compiler;
+    private Path sources;
+    private Path classes;
+
+    @Before
+    public void createDirectories() throws IOException {
+        compiler = ToolProvider.getSystemJavaCompiler();
+        // 只有JRE、没有javac时跳过
+        Assume.assumeNotNull(compiler);
+        sources = Files.createTempDirectory("pattern-component-src");
+        classes = Files.createTempDirectory("pattern-component-classes");
+    }
+
+    @After
+    public void deleteDirectories() throws IOException {
+        for (Path root : Arrays.asList(sources, classes)) {
+            if (root == null) {
+                continue;
+            }
+            try (Stream<Path> paths = Files.walk(root)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void fullCompileIndexesEveryAnnotatedType() throws IOException {
+        compile(source("A", "FACTORY"), source("B", "PRODUCT"), source("Plain", null));
+
+        assertEquals(Arrays.asList("FACTORY=demo.A", "PRODUCT=demo.B"), index());
+    }
+
+    @Test
+    public void recompilingOneTypeKeepsEntriesOfTheOthers() throws IOException {
+        compile(source("A", "FACTORY"), source("B", "PRODUCT"));
+
+        // 增量编译只重新编译B，A的条目要从已有索引里保留下来
+        compile(source("B", "PRODUCT"));
+
+        assertEquals(Arrays.asList("FACTORY=demo.A", "PRODUCT=demo.B"), index());
+    }
+
+    @Test
+    public void deletedTypeIsDroppedOnNextIncrementalCompile() throws IOException {
+        File a = source("A", "FACTORY");
+        compile(a, source("B", "PRODUCT"));
+
+        assertTrue(a.delete());
+        Files.delete(classes.resolve("demo/A.class"));
+        compile(source("B", "PRODUCT"));
+
+        assertEquals(Collections.singletonList("PRODUCT=demo.B"), index());
+    }
+
+    @Test
+    public void changedOrRemovedAnnotationReplacesTheStaleEntry() throws IOException {
+        compile(source("A", "FACTORY"), source("B", "PRODUCT"));
+
+        compile(source("B", "FACTORY"));
+        assertEquals(Arrays.asList("FACTORY=demo.A", "FACTORY=demo.B"), index());
+
+        compile(source("A", null));
+        assertEquals(Collections.singletonList("FACTORY=demo.B"), index());
+
+        // 最后一个注解也删掉后，索引要被清空而不是保留旧内容
+        compile(source("B", null));
+        assertTrue(index().isEmpty());
+    }
+
+    /**
+     * 在demo包下写一个类的源码，role为null时不加注解
+     */
+    private File source(String name, String role) throws IOException {
+        String annotation = role == null ? ""
+                : "@com.zjx.designmodel.index.PatternComponent(com.zjx.designmodel.index.PatternComponent.Role." + role + ")\n";
+        Path file = sources.resolve("demo/" + name + ".java");
+        Files.createDirectories(file.getParent());
+        Files.write(file, ("package demo;\n\n" + annotation + "public class " + name + " {\n}\n").getBytes(StandardCharsets.UTF_8));
+        return file.toFile();
+    }
+
+    /**
+     * 像增量编译一样只编译给定的文件，之前编译出的类通过classpath可见
+     */
+    private void compile(File... files) throws IOException {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            List<String> options = new ArrayList<>(Arrays.asList(
+                    "-d", classes.toString(),
+                    "-classpath", classes + File.pathSeparator + System.getProperty("java.class.path"),
+                    "-processor", PatternComponentProcessor.class.getName()));
+            Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjects(files);
+            boolean success = compiler.getTask(null, fileManager, diagnostics, options, null, units).call();
+            StringBuilder errors = new StringBuilder();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                errors.append(diagnostic).append('\n');
+            }
+            assertTrue(errors.toString(), success);
+            assertFalse(errors.toString(), errors.toString().contains(PatternComponentIndex.LOCATION));
+        }
+    }
+
+    private List<String> index() throws IOException {
+        Path file = classes.resolve(PatternComponentIndex.LOCATION);
+        if (!Files.exists(file)) {
+            return Collections.emptyList();
+        }
+        return Files.readAllLines(file, StandardCharsets.UTF_8).stream()
+                .filter(line -> !line.trim().isEmpty())
+                .collect(Collectors.toList());
+    }
+}
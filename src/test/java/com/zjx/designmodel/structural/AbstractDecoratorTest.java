@@ -0,0 +1,65 @@
+package com.zjx.designmodel.structural;
+
+import com.zjx.designmodel.common.Money;
+import org.junit.Test;
+
+import java.lang.reflect.Modifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * AbstractDecorator的单元测试：混合装饰链的描述和价格
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/19 14:30
+ * @Version V1.0
+ **/
+public class AbstractDecoratorTest {
+
+    @Test
+    public void mixedChainRendersEveryLayerInOrder() {
+        FruitSaladPipeline pipeline = new FruitSaladPipeline(new FruitSalad());
+        pipeline.add("西瓜", WaterMelonDecorator::new);
+        AbstractFruitSalad chain = new MangoDecorator(
+                MemoizedFruitSalad.of(new KiwiDecorator(
+                        CompiledFruitSalad.compile(new MangoDecorator(pipeline)))));
+
+        String expected = "水果（标准）\n加份西瓜\n加份芒果\n加份猕猴桃\n加份芒果\n";
+        assertEquals(expected, chain.remark());
+        StringBuilder sb = new StringBuilder("订单：");
+        chain.appendRemark(sb);
+        assertEquals("订单：" + expected, sb.toString());
+        assertEquals(Money.of(9 + 3 + 5 + 2 + 5), chain.price());
+        assertEquals(chain.remark(), CompiledFruitSalad.compile(chain).remark());
+    }
+
+    @Test
+    public void renderingMethodsCannotBeOverridden() throws NoSuchMethodException {
+        // 覆盖了remark()/price()的子类被外层装饰器或编译时会被跳过，只允许通过extraRemark()/extraPrice()扩展
+        assertTrue(Modifier.isFinal(AbstractDecorator.class.getMethod("remark").getModifiers()));
+        assertTrue(Modifier.isFinal(AbstractDecorator.class.getMethod("appendRemark", StringBuilder.class).getModifiers()));
+        assertTrue(Modifier.isFinal(AbstractDecorator.class.getMethod("price").getModifiers()));
+    }
+
+    /**
+     * 测试里新加的配料，按约定只覆盖extraRemark/extraPrice
+     */
+    private static class MangoDecorator extends AbstractDecorator {
+
+        MangoDecorator(AbstractFruitSalad fruitSalad) {
+            super(fruitSalad);
+        }
+
+        @Override
+        protected String extraRemark() {
+            return "加份芒果\n";
+        }
+
+        @Override
+        protected long extraPrice() {
+            return Money.of(5);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.zjx.designmodel.structural;
+
+import com.zjx.designmodel.common.EventSink;
+import com.zjx.designmodel.common.EventSinks;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * AdaptiveConcurrencyLimiter的单元测试，以及它在TakeawayService支付阶段的行为
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/17 15:00
+ * @Version V1.0
+ **/
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final long[] now = {0};
+    private EventSink previousSink;
+
+    @Before
+    public void silenceEvents() {
+        previousSink = EventSinks.get();
+        EventSinks.set(EventSinks.NOOP);
+    }
+
+    @After
+    public void restoreEvents() {
+        EventSinks.set(previousSink);
+    }
+
+    @Test
+    public void rejectsWhenInFlightReachesLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2);
+        AdaptiveConcurrencyLimiter.Permit first = limiter.tryAcquire(now[0]);
+        assertNotNull(first);
+        assertNotNull(limiter.tryAcquire(now[0]));
+        assertNull(limiter.tryAcquire(now[0]));
+        assertEquals(1, limiter.getRejected());
+
+        now[0] += MILLIS;
+        limiter.release(first, true);
+        assertNotNull(limiter.tryAcquire(now[0]));
+        assertEquals(2, limiter.getInFlight());
+    }
+
+    @Test
+    public void growsByAboutOnePerRoundWhileLatencyIsStable() {
+        AdaptiveConcurrencyLimiter limiter = limiter(10);
+        for (int i = 0; i < 10; i++) {
+            completeAfter(limiter, MILLIS, true);
+        }
+        assertEquals(10, limiter.getLimit());
+        completeAfter(limiter, MILLIS, true);
+        assertEquals(11, limiter.getLimit());
+    }
+
+    @Test
+    public void backsOffWhenCallThrows() {
+        AdaptiveConcurrencyLimiter limiter = limiter(10);
+        completeAfter(limiter, MILLIS, false);
+        assertEquals(5, limiter.getLimit());
+    }
+
+    @Test
+    public void backsOffWhenLatencyExceedsTolerance() {
+        AdaptiveConcurrencyLimiter limiter = limiter(10);
+        completeAfter(limiter, MILLIS, true);
+        completeAfter(limiter, 3 * MILLIS, true);
+        assertEquals(5, limiter.getLimit());
+    }
+
+    @Test
+    public void backsOffAtMostOncePerRoundTrip() {
+        AdaptiveConcurrencyLimiter limiter = limiter(10);
+        completeAfter(limiter, MILLIS, true);
+
+        // 两个请求在同一波拥塞里变慢，只回落一次
+        now[0] += MILLIS;
+        AdaptiveConcurrencyLimiter.Permit first = limiter.tryAcquire(now[0]);
+        AdaptiveConcurrencyLimiter.Permit second = limiter.tryAcquire(now[0]);
+        now[0] += 5 * MILLIS;
+        limiter.release(first, true);
+        limiter.release(second, true);
+        assertEquals(5, limiter.getLimit());
+
+        // 回落之后才发出的慢请求会再次回落
+        completeAfter(limiter, 5 * MILLIS, true);
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void neverDropsBelowMinLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 3, 100, 2.0, 0.5, () -> now[0]);
+        completeAfter(limiter, MILLIS, false);
+        completeAfter(limiter, MILLIS, false);
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    public void recordsTimeSinceRequestArrival() {
+        AdaptiveConcurrencyLimiter limiter = limiter(10);
+        long arrivedAt = now[0];
+        now[0] += 7 * MILLIS;
+        assertNotNull(limiter.tryAcquire(arrivedAt));
+        assertEquals(7_000, limiter.getMaxQueueMicros());
+    }
+
+    @Test
+    public void paymentDeclineDoesNotShrinkLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(10);
+        PayService declining = new PayService() {
+            @Override
+            public boolean pay(Takeaway takeaway) {
+                // 每次支付耗时都是1ms，延迟稳定
+                now[0] += MILLIS;
+                return false;
+            }
+        };
+        TakeawayService service = new TakeawayService(new OrderService(), declining, new DeliveryService(), limiter);
+        for (int i = 0; i < 50; i++) {
+            now[0] += MILLIS;
+            assertFalse(service.takeOrder(takeaway()));
+        }
+        assertTrue("拒付不应触发回落：" + limiter, limiter.getLimit() >= 10);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void paymentExceptionShrinksLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(10);
+        PayService broken = new PayService() {
+            @Override
+            public boolean pay(Takeaway takeaway) {
+                now[0] += MILLIS;
+                throw new IllegalStateException("支付系统不可用");
+            }
+        };
+        TakeawayService service = new TakeawayService(new OrderService(), broken, new DeliveryService(), limiter);
+        now[0] += MILLIS;
+        try {
+            service.takeOrder(takeaway());
+            fail("支付异常应当抛给调用方");
+        } catch (IllegalStateException expected) {
+            assertEquals(5, limiter.getLimit());
+            assertEquals(0, limiter.getInFlight());
+        }
+    }
+
+    @Test
+    public void synchronousOrderRecordsTimeSpentBeforePayment() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+        OrderService slowOrderService = new OrderService() {
+            @Override
+            public boolean placeAnOrder(Takeaway takeaway) {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.placeAnOrder(takeaway);
+            }
+        };
+        TakeawayService service = new TakeawayService(slowOrderService, new PayService(), new DeliveryService(), limiter);
+        assertTrue(service.takeOrder(takeaway()));
+        assertTrue("应当统计到下单阶段的耗时：" + limiter, limiter.getMaxQueueMicros() >= 20_000);
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(int initialLimit) {
+        return new AdaptiveConcurrencyLimiter(initialLimit, 1, 100, 2.0, 0.5, () -> now[0]);
+    }
+
+    /**
+     * 推进时钟后发出一个请求，耗时rtt后结束
+     */
+    private void completeAfter(AdaptiveConcurrencyLimiter limiter, long rtt, boolean completedNormally) {
+        now[0] += MILLIS;
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire(now[0]);
+        assertNotNull(permit);
+        now[0] += rtt;
+        limiter.release(permit, completedNormally);
+    }
+
+    private static Takeaway takeaway() {
+        Takeaway takeaway = new Takeaway();
+        takeaway.setName("泡椒 ");
+        return takeaway;
+    }
+}
@@ -0,0 +1,176 @@
+package com.zjx.designmodel.structural;
+
+import com.zjx.designmodel.common.EventSink;
+import com.zjx.designmodel.common.EventSinks;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * BatchingApplePieAdaptor的单元测试
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/19 10:00
+ * @Version V1.0
+ **/
+public class BatchingApplePieAdaptorTest {
+
+    private final List<Integer> batches = new CopyOnWriteArrayList<>();
+    private EventSink previousSink;
+
+    @Before
+    public void silenceEvents() {
+        previousSink = EventSinks.get();
+        EventSinks.set(EventSinks.NOOP);
+    }
+
+    @After
+    public void restoreEvents() {
+        EventSinks.set(previousSink);
+    }
+
+    @Test
+    public void flushesWhenBatchIsFull() throws Exception {
+        // maxWait足够长，只有攒满才会触发调用
+        try (BatchingApplePieAdaptor adaptor = new BatchingApplePieAdaptor(new RecordingApple(), 4, 1, TimeUnit.MINUTES)) {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(adaptor.makeAsync());
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+            assertEquals(asList(4), batches);
+        }
+    }
+
+    @Test
+    public void flushesPartialBatchAfterMaxWait() throws Exception {
+        try (BatchingApplePieAdaptor adaptor = new BatchingApplePieAdaptor(new RecordingApple(), 100, 20, TimeUnit.MILLISECONDS)) {
+            CompletableFuture<Void> first = adaptor.makeAsync();
+            CompletableFuture<Void> second = adaptor.makeAsync();
+            CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+            assertEquals(asList(2), batches);
+        }
+    }
+
+    @Test
+    public void errorFromLegacyCallFailsOnlyThatBatch() throws Exception {
+        AtomicBoolean broken = new AtomicBoolean(true);
+        Apple apple = new RecordingApple() {
+            @Override
+            public void addApples(int count) {
+                if (broken.getAndSet(false)) {
+                    throw new AssertionError("遗留组件出错");
+                }
+                super.addApples(count);
+            }
+        };
+        try (BatchingApplePieAdaptor adaptor = new BatchingApplePieAdaptor(apple, 1, 1, TimeUnit.MINUTES)) {
+            try {
+                adaptor.makeAsync().get(5, TimeUnit.SECONDS);
+                fail("遗留调用的Error应当传给这一批的调用方");
+            } catch (ExecutionException expected) {
+                assertTrue(expected.getCause() instanceof AssertionError);
+            }
+            // 后台线程还活着，后面的请求照常处理
+            adaptor.makeAsync().get(5, TimeUnit.SECONDS);
+            assertEquals(asList(1), batches);
+        }
+    }
+
+    @Test
+    public void closeWaitsForLegacyCallWithoutInterruptingIt() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        Apple apple = new RecordingApple() {
+            @Override
+            public void addApples(int count) {
+                entered.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                }
+                super.addApples(count);
+            }
+        };
+        BatchingApplePieAdaptor adaptor = new BatchingApplePieAdaptor(apple, 1, 1, TimeUnit.MINUTES);
+        CompletableFuture<Void> running = adaptor.makeAsync();
+        CompletableFuture<Void> queued = adaptor.makeAsync();
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        Thread closer = new Thread(adaptor::close);
+        closer.start();
+        Thread.sleep(50);
+        assertTrue("遗留调用还没结束，close()应当等待", closer.isAlive());
+        release.countDown();
+        closer.join(5_000);
+
+        assertFalse(closer.isAlive());
+        assertFalse(interrupted.get());
+        running.get(5, TimeUnit.SECONDS);
+        // 关闭前提交的请求照常处理
+        queued.get(5, TimeUnit.SECONDS);
+        assertTrue(adaptor.makeAsync().isCompletedExceptionally());
+    }
+
+    @Test
+    public void everyRequestCompletesWhenCloseRacesWithMakeAsync() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            BatchingApplePieAdaptor adaptor = new BatchingApplePieAdaptor(new RecordingApple(), 8, 1, TimeUnit.MILLISECONDS);
+            List<CompletableFuture<Void>> futures = new CopyOnWriteArrayList<>();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> producers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                Thread producer = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < 200; j++) {
+                        futures.add(adaptor.makeAsync());
+                    }
+                });
+                producer.start();
+                producers.add(producer);
+            }
+            start.countDown();
+            adaptor.close();
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            for (CompletableFuture<Void> future : futures) {
+                try {
+                    future.get(5, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof IllegalStateException);
+                }
+            }
+        }
+    }
+
+    private class RecordingApple extends Apple {
+
+        @Override
+        public void addApples(int count) {
+            batches.add(count);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.zjx.designmodel.structural;
+
+import com.zjx.designmodel.common.Money;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * CompiledFruitSalad的单元测试：编译结果与递归的装饰链一致
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/19 14:00
+ * @Version V1.0
+ **/
+public class CompiledFruitSaladTest {
+
+    private static final int[] DEPTHS = {0, 1, 2, 3, 10, 100, 1000};
+
+    @Test
+    public void compiledMatchesRecursiveChainAtEveryDepth() {
+        Random random = new Random(7);
+        for (int depth : DEPTHS) {
+            for (int sample = 0; sample < 20; sample++) {
+                AbstractFruitSalad chain = randomChain(random, depth);
+                CompiledFruitSalad compiled = CompiledFruitSalad.compile(chain);
+
+                String context = "深度" + depth + "第" + sample + "条";
+                assertEquals(context, chain.price(), compiled.price());
+                assertEquals(context, chain.remark(), compiled.remark());
+                assertEquals(context, render(chain), render(compiled));
+            }
+        }
+    }
+
+    @Test
+    public void compiledMatchesChainBuiltOnMemoizedAndCompiledLayers() {
+        AbstractFruitSalad signature = MemoizedFruitSalad.of(new KiwiDecorator(new KiwiDecorator(new FruitSalad())));
+        AbstractFruitSalad onMemoized = new WaterMelonDecorator(MemoizedFruitSalad.of(new WaterMelonDecorator(signature)));
+        assertSameResults(onMemoized);
+
+        AbstractFruitSalad onCompiled = new KiwiDecorator(CompiledFruitSalad.compile(new WaterMelonDecorator(new FruitSalad())));
+        assertSameResults(onCompiled);
+    }
+
+    @Test
+    public void toppingCountsFollowFirstAppearance() {
+        AbstractFruitSalad chain = new KiwiDecorator(new WaterMelonDecorator(MemoizedFruitSalad.of(
+                new KiwiDecorator(new WaterMelonDecorator(new KiwiDecorator(new FruitSalad()))))));
+        CompiledFruitSalad compiled = CompiledFruitSalad.compile(chain);
+
+        assertEquals(Integer.valueOf(3), compiled.getToppingCounts().get("加份猕猴桃\n"));
+        assertEquals(Integer.valueOf(2), compiled.getToppingCounts().get("加份西瓜\n"));
+        assertEquals("加份猕猴桃\n", compiled.getToppingCounts().keySet().iterator().next());
+        assertEquals(Money.of(9 + 3 * 2 + 2 * 3), compiled.price());
+
+        StringBuilder summary = new StringBuilder();
+        compiled.appendSummary(summary);
+        assertEquals("水果（标准）\n3x 加份猕猴桃\n2x 加份西瓜\n", summary.toString());
+    }
+
+    @Test
+    public void compilingCompiledSaladReturnsIt() {
+        CompiledFruitSalad compiled = CompiledFruitSalad.compile(new KiwiDecorator(new FruitSalad()));
+        assertSame(compiled, CompiledFruitSalad.compile(compiled));
+    }
+
+    private static void assertSameResults(AbstractFruitSalad chain) {
+        CompiledFruitSalad compiled = CompiledFruitSalad.compile(chain);
+        assertEquals(chain.price(), compiled.price());
+        assertEquals(chain.remark(), compiled.remark());
+        assertEquals(render(chain), render(compiled));
+    }
+
+    /**
+     * 猕猴桃、西瓜随机叠加，中间随机插入缓存层
+     */
+    private static AbstractFruitSalad randomChain(Random random, int depth) {
+        AbstractFruitSalad fruitSalad = new FruitSalad();
+        for (int i = 0; i < depth; i++) {
+            switch (random.nextInt(5)) {
+                case 0:
+                    fruitSalad = MemoizedFruitSalad.of(fruitSalad);
+                    break;
+                case 1:
+                case 2:
+                    fruitSalad = new KiwiDecorator(fruitSalad);
+                    break;
+                default:
+                    fruitSalad = new WaterMelonDecorator(fruitSalad);
+                    break;
+            }
+        }
+        return fruitSalad;
+    }
+
+    private static String render(AbstractFruitSalad fruitSalad) {
+        StringBuilder sb = new StringBuilder();
+        fruitSalad.appendRemark(sb);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,123 @@
+package com.zjx.designmodel.structural;
+
+import com.zjx.designmodel.common.Money;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * FruitSaladPipeline的单元测试：增删步骤，以及并发增删时读者看到的快照始终一致、没有丢失更新
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/19 15:30
+ * @Version V1.0
+ **/
+public class FruitSaladPipelineTest {
+
+    private static final long BASE_PRICE = Money.of(9);
+    private static final long KIWI_PRICE = Money.of(2);
+    private static final String KIWI = "加份猕猴桃\n";
+
+    @Test
+    public void addAndRemoveStages() {
+        FruitSaladPipeline pipeline = new FruitSaladPipeline(new FruitSalad());
+        pipeline.add("猕猴桃", KiwiDecorator::new);
+        pipeline.add("西瓜", WaterMelonDecorator::new);
+        assertEquals("水果（标准）\n加份猕猴桃\n加份西瓜\n", pipeline.remark());
+        assertEquals(Money.of(9 + 2 + 3), pipeline.price());
+
+        assertTrue(pipeline.remove("猕猴桃"));
+        assertFalse(pipeline.remove("猕猴桃"));
+        assertEquals("水果（标准）\n加份西瓜\n", pipeline.remark());
+        assertEquals(Money.of(9 + 3), pipeline.price());
+    }
+
+    @Test
+    public void duplicateStageNameIsRejected() {
+        FruitSaladPipeline pipeline = new FruitSaladPipeline(new FruitSalad());
+        pipeline.add("猕猴桃", KiwiDecorator::new);
+        try {
+            pipeline.add("猕猴桃", WaterMelonDecorator::new);
+            fail("同名步骤不能重复添加");
+        } catch (IllegalArgumentException expected) {
+            assertEquals(Money.of(9 + 2), pipeline.price());
+        }
+    }
+
+    @Test
+    public void concurrentAddRemoveKeepsSnapshotsConsistentAndLosesNoUpdate() throws Exception {
+        FruitSaladPipeline pipeline = new FruitSaladPipeline(new FruitSalad());
+        int writers = 4;
+        int rounds = 2_000;
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> inconsistency = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int r = 0; r < 2; r++) {
+            threads.add(new Thread(() -> {
+                while (!done.get()) {
+                    // 同一个快照里的价格、描述、配料份数必须互相对得上
+                    CompiledFruitSalad snapshot = pipeline.snapshot();
+                    int kiwis = count(snapshot.remark(), KIWI);
+                    Integer counted = snapshot.getToppingCounts().get(KIWI);
+                    if (snapshot.price() != BASE_PRICE + kiwis * KIWI_PRICE || (counted == null ? 0 : counted) != kiwis) {
+                        inconsistency.compareAndSet(null, snapshot.remark() + snapshot.price());
+                    }
+                }
+            }));
+        }
+        for (int w = 0; w < writers; w++) {
+            String writer = "writer" + w;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < rounds; i++) {
+                    pipeline.add(writer + "-" + i, KiwiDecorator::new);
+                    if (!pipeline.remove(writer + "-" + i)) {
+                        inconsistency.compareAndSet(null, writer + "的步骤" + i + "丢失了");
+                    }
+                }
+                pipeline.add(writer, KiwiDecorator::new);
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads.subList(2, threads.size())) {
+            thread.join();
+        }
+        done.set(true);
+        for (Thread thread : threads.subList(0, 2)) {
+            thread.join();
+        }
+
+        assertNull(inconsistency.get(), inconsistency.get());
+        // 每个写者最后留下一个步骤，写时复制的CAS不会丢失任何一次增删
+        assertEquals(BASE_PRICE + writers * KIWI_PRICE, pipeline.price());
+        assertEquals(Integer.valueOf(writers), pipeline.snapshot().getToppingCounts().get(KIWI));
+    }
+
+    private static int count(String text, String part) {
+        int count = 0;
+        for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + part.length())) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,150 @@
+package com.zjx.designmodel.structural;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * MemoizedFruitSalad的单元测试：缓存命中、失效，以及计算过程中失效不会把旧值写回
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/19 15:00
+ * @Version V1.0
+ **/
+public class MemoizedFruitSaladTest {
+
+    @Test
+    public void cachesUntilInvalidated() {
+        MutableFruitSalad base = new MutableFruitSalad(100);
+        MemoizedFruitSalad memoized = new MemoizedFruitSalad(base);
+
+        assertEquals(100, memoized.price());
+        base.set(200);
+        assertEquals("没有失效前返回缓存", 100, memoized.price());
+        assertEquals(1, base.computations.get());
+
+        memoized.invalidate();
+        assertEquals(200, memoized.price());
+        assertEquals("价格200\n", memoized.remark());
+        assertEquals(2, base.computations.get());
+    }
+
+    @Test
+    public void invalidateDuringComputeDoesNotPublishStaleValue() throws Exception {
+        MutableFruitSalad base = new MutableFruitSalad(100);
+        MemoizedFruitSalad memoized = new MemoizedFruitSalad(base);
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        base.pauseNextPrice(reading, resume);
+
+        // 这次计算读到的是旧价格，在它写回缓存之前价格变了并且调用了invalidate
+        CompletableFuture<Long> stale = CompletableFuture.supplyAsync(memoized::price);
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+        base.set(200);
+        memoized.invalidate();
+        resume.countDown();
+        assertEquals(Long.valueOf(100), stale.get(5, TimeUnit.SECONDS));
+
+        assertEquals(200, memoized.price());
+        assertEquals("价格200\n", memoized.remark());
+    }
+
+    @Test
+    public void readsAfterInvalidateNeverSeeStaleValueUnderContention() throws Exception {
+        MutableFruitSalad base = new MutableFruitSalad(0);
+        MemoizedFruitSalad memoized = new MemoizedFruitSalad(base);
+        AtomicBoolean done = new AtomicBoolean();
+        Thread[] readers = new Thread[3];
+        for (int i = 0; i < readers.length; i++) {
+            // 不断地查询，制造和失效并发的计算与写回
+            readers[i] = new Thread(() -> {
+                while (!done.get()) {
+                    memoized.price();
+                    memoized.remark();
+                }
+            });
+            readers[i].start();
+        }
+        try {
+            for (int price = 1; price <= 20_000; price++) {
+                base.set(price);
+                memoized.invalidate();
+                assertEquals(price, memoized.price());
+                assertEquals("价格" + price + "\n", memoized.remark());
+            }
+        } finally {
+            done.set(true);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        }
+    }
+
+    @Test
+    public void ofDoesNotWrapTwice() {
+        AbstractFruitSalad memoized = MemoizedFruitSalad.of(new FruitSalad());
+        assertSame(memoized, MemoizedFruitSalad.of(memoized));
+        AbstractFruitSalad compiled = CompiledFruitSalad.compile(new FruitSalad());
+        assertSame(compiled, MemoizedFruitSalad.of(compiled));
+        assertFalse(MemoizedFruitSalad.of(new FruitSalad()) == memoized);
+    }
+
+    /**
+     * 价格可变的基础沙拉，描述跟着价格变
+     */
+    private static class MutableFruitSalad extends AbstractFruitSalad {
+
+        private volatile long price;
+        private volatile CountDownLatch reading;
+        private volatile CountDownLatch resume;
+        private final AtomicInteger computations = new AtomicInteger();
+
+        MutableFruitSalad(long price) {
+            this.price = price;
+        }
+
+        void set(long price) {
+            this.price = price;
+        }
+
+        /**
+         * 下一次price()读到价格后停住，直到resume放行
+         */
+        void pauseNextPrice(CountDownLatch reading, CountDownLatch resume) {
+            this.resume = resume;
+            this.reading = reading;
+        }
+
+        @Override
+        public long price() {
+            computations.incrementAndGet();
+            long current = price;
+            CountDownLatch paused = reading;
+            if (paused != null) {
+                reading = null;
+                paused.countDown();
+                try {
+                    resume.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return current;
+        }
+
+        @Override
+        public String remark() {
+            return "价格" + price + "\n";
+        }
+    }
+}
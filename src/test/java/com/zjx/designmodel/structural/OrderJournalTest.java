@@ -0,0 +1,243 @@
+package com.zjx.designmodel.structural;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * OrderJournal的单元测试：重放、段文件滚动、未写完整记录的恢复、关闭时等待刷盘、I/O失败、解除映射
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/16 15:00
+ * @Version V1.0
+ **/
+public class OrderJournalTest {
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("order-journal-test").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void replayRestoresOrdersAndContinuesNumbering() throws Exception {
+        try (OrderJournal journal = open(SEGMENT_SIZE)) {
+            assertEquals(1, journal.append(takeaway("泡椒 ", 1, 2)));
+            assertEquals(2, journal.append(takeaway("酸菜鱼 ", 3, 4)));
+            assertEquals(3, journal.append(takeaway("小龙虾 ", 5, 6)));
+        }
+
+        try (OrderJournal journal = open(SEGMENT_SIZE)) {
+            assertEquals(3, journal.size());
+            Takeaway second = journal.get(2);
+            assertEquals("酸菜鱼 ", second.getName());
+            assertEquals(3, second.getX(), 0);
+            assertEquals(4, second.getY(), 0);
+            assertEquals(4, journal.append(takeaway("麻辣烫 ", 7, 8)));
+        }
+    }
+
+    @Test
+    public void replayReadsEveryRolledSegment() throws Exception {
+        int recordSize = recordSize("泡椒 ");
+        // 每个段文件放3条记录
+        int segmentSize = recordSize * 3 + recordSize / 2;
+        try (OrderJournal journal = open(segmentSize)) {
+            for (int i = 0; i < 10; i++) {
+                journal.append(takeaway("泡椒 ", i, i));
+            }
+        }
+        assertEquals(4, directory.listFiles().length);
+
+        try (OrderJournal journal = open(segmentSize)) {
+            assertEquals(10, journal.size());
+            for (long orderId = 1; orderId <= 10; orderId++) {
+                assertEquals(orderId - 1, journal.get(orderId).getX(), 0);
+            }
+            assertEquals(11, journal.append(takeaway("泡椒 ", 10, 10)));
+        }
+    }
+
+    @Test
+    public void tornRecordIsDiscardedAndOverwrittenOnReplay() throws Exception {
+        try (OrderJournal journal = open(SEGMENT_SIZE)) {
+            journal.append(takeaway("泡椒 ", 1, 1));
+            journal.append(takeaway("酸菜鱼 ", 2, 2));
+            journal.append(takeaway("小龙虾 ", 3, 3));
+        }
+        // 模拟第三条记录只写了一半：记录体最后一个字节没落盘，校验和对不上
+        long thirdEnd = recordSize("泡椒 ") + recordSize("酸菜鱼 ") + recordSize("小龙虾 ");
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, String.format("%020d.log", 1)), "rw")) {
+            file.seek(thirdEnd - 1);
+            int last = file.read();
+            file.seek(thirdEnd - 1);
+            file.write(last ^ 0xFF);
+        }
+
+        try (OrderJournal journal = open(SEGMENT_SIZE)) {
+            assertEquals(2, journal.size());
+            assertNull(journal.get(3));
+            // 新记录从未写完整的记录处开始覆盖
+            assertEquals(3, journal.append(takeaway("麻辣烫 ", 4, 4)));
+        }
+
+        try (OrderJournal journal = open(SEGMENT_SIZE)) {
+            assertEquals(3, journal.size());
+            assertEquals("麻辣烫 ", journal.get(3).getName());
+        }
+    }
+
+    @Test
+    public void recordWithImpossibleLengthStopsReplay() throws Exception {
+        try (OrderJournal journal = open(SEGMENT_SIZE)) {
+            journal.append(takeaway("泡椒 ", 1, 1));
+            journal.append(takeaway("酸菜鱼 ", 2, 2));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, String.format("%020d.log", 1)), "rw")) {
+            file.seek(recordSize("泡椒 "));
+            file.writeInt(SEGMENT_SIZE);
+        }
+
+        try (OrderJournal journal = open(SEGMENT_SIZE)) {
+            assertEquals(1, journal.size());
+            assertEquals("泡椒 ", journal.get(1).getName());
+        }
+    }
+
+    @Test
+    public void awaitDurableDuringCloseSucceedsOnceFinalFlushCoversTheOrder() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            // 刷盘间隔很长，只有关闭前的最后一次刷盘能让订单持久化
+            OrderJournal journal = new OrderJournal(directory, SEGMENT_SIZE, 1, TimeUnit.HOURS);
+            long orderId = journal.append(takeaway("泡椒 ", round, round));
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            Thread waiter = new Thread(() -> {
+                try {
+                    journal.awaitDurable(orderId);
+                } catch (Throwable e) {
+                    error.set(e);
+                }
+            });
+            waiter.start();
+            journal.close();
+            waiter.join();
+            if (error.get() != null) {
+                throw new AssertionError("第" + round + "轮等待刷盘失败", error.get());
+            }
+        }
+    }
+
+    @Test
+    public void appendAfterCloseIsRejected() throws Exception {
+        OrderJournal journal = open(SEGMENT_SIZE);
+        journal.close();
+        try {
+            journal.append(takeaway("泡椒 ", 0, 0));
+            fail("关闭后不能再追加");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage().contains("已关闭"));
+        }
+    }
+
+    @Test
+    public void segmentCreationFailureIsReportedAsOrderNotPlaced() throws Exception {
+        try (OrderJournal journal = open(SEGMENT_SIZE)) {
+            // 目录被换成同名文件，新的段文件无法创建
+            assertTrue(directory.delete());
+            assertTrue(directory.createNewFile());
+            try {
+                journal.append(takeaway("泡椒 ", 0, 0));
+                fail("无法创建段文件时追加应当失败");
+            } catch (IllegalStateException expected) {
+                assertTrue(expected.getCause() instanceof IOException);
+            }
+            assertFalse(new OrderService(journal).placeAnOrder(takeaway("酸菜鱼 ", 0, 0)));
+        }
+    }
+
+    @Test
+    public void getReturnsCopy() throws Exception {
+        try (OrderJournal journal = open(SEGMENT_SIZE)) {
+            long orderId = journal.append(takeaway("泡椒 ", 1, 2));
+            journal.get(orderId).setName("被篡改");
+            assertEquals("泡椒 ", journal.get(orderId).getName());
+        }
+    }
+
+    @Test
+    public void rolledSegmentsAreUnmapped() throws Exception {
+        File maps = new File("/proc/self/maps");
+        assumeTrue("需要/proc/self/maps统计映射", maps.canRead());
+        int recordSize = recordSize("泡椒 ");
+        try (OrderJournal journal = open(recordSize * 2)) {
+            long last = 0;
+            for (int i = 0; i < 20; i++) {
+                last = journal.append(takeaway("泡椒 ", i, i));
+            }
+            journal.awaitDurable(last);
+            assertEquals(10, directory.listFiles().length);
+            assertEquals("只有当前段还映射着", 1, mappedSegments(maps));
+        }
+        assertEquals(0, mappedSegments(maps));
+
+        try (OrderJournal journal = open(recordSize * 2)) {
+            assertEquals(20, journal.size());
+            assertEquals("重放过的旧段不再映射", 1, mappedSegments(maps));
+        }
+    }
+
+    private long mappedSegments(File maps) throws IOException {
+        String prefix = directory.getCanonicalPath() + File.separator;
+        return Files.readAllLines(maps.toPath()).stream()
+                .filter(line -> line.contains(prefix))
+                .map(line -> line.substring(line.indexOf(prefix)))
+                .distinct()
+                .count();
+    }
+
+    private OrderJournal open(int segmentSize) throws IOException {
+        return new OrderJournal(directory, segmentSize, 1, TimeUnit.MILLISECONDS);
+    }
+
+    private static int recordSize(String name) {
+        return 4 + 4 + 8 + 8 + 8 + name.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static Takeaway takeaway(String name, double x, double y) {
+        Takeaway takeaway = new Takeaway();
+        takeaway.setName(name);
+        takeaway.setX(x);
+        takeaway.setY(y);
+        return takeaway;
+    }
+}
@@ -0,0 +1,131 @@
+package com.zjx.designmodel.structural;
+
+import com.zjx.designmodel.common.EventSink;
+import com.zjx.designmodel.common.EventSinks;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * PartitionedTakeawayService的单元测试
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/17 10:00
+ * @Version V1.0
+ **/
+public class PartitionedTakeawayServiceTest {
+
+    private EventSink previousSink;
+
+    @Before
+    public void silenceEvents() {
+        previousSink = EventSinks.get();
+        EventSinks.set(EventSinks.NOOP);
+    }
+
+    @After
+    public void restoreEvents() {
+        EventSinks.set(previousSink);
+    }
+
+    @Test
+    public void countsSuccessfulOrdersPerName() throws Exception {
+        try (PartitionedTakeawayService service = new PartitionedTakeawayService(4, 16, TakeawayService::new)) {
+            service.submit(takeaway("麻辣烫 ")).get(5, TimeUnit.SECONDS);
+            service.submit(takeaway("麻辣烫 ")).get(5, TimeUnit.SECONDS);
+            service.submit(takeaway("黄焖鸡 ")).get(5, TimeUnit.SECONDS);
+
+            assertEquals(Integer.valueOf(2), service.orderCount(takeaway("麻辣烫 ")).get(5, TimeUnit.SECONDS));
+            assertEquals(Integer.valueOf(1), service.orderCount(takeaway("黄焖鸡 ")).get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void fullPartitionFailsSubmitAndOrderCountWithoutThrowing() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        try (PartitionedTakeawayService service = new PartitionedTakeawayService(1, 1, () -> new BlockingTakeawayService(started, release))) {
+            CompletableFuture<Boolean> running = service.submit(takeaway("麻辣烫 "));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<Boolean> queued = service.submit(takeaway("麻辣烫 "));
+
+            assertRejected(service.submit(takeaway("麻辣烫 ")));
+            assertRejected(service.orderCount(takeaway("麻辣烫 ")));
+            assertEquals(1, service.stats()[0].getRejected());
+
+            release.countDown();
+            assertTrue(running.get(5, TimeUnit.SECONDS));
+            assertTrue(queued.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void errorInOrderCompletesFutureExceptionally() throws Exception {
+        try (PartitionedTakeawayService service = new PartitionedTakeawayService(1, 16, FailingTakeawayService::new)) {
+            try {
+                service.submit(takeaway("麻辣烫 ")).get(5, TimeUnit.SECONDS);
+                fail("下单抛出的Error应当传给调用方");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof AssertionError);
+            }
+            // 分区线程还能继续处理
+            assertEquals(Integer.valueOf(0), service.orderCount(takeaway("麻辣烫 ")).get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    private static void assertRejected(CompletableFuture<?> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("分区队列已满时应当被拒绝");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    private static Takeaway takeaway(String name) {
+        Takeaway takeaway = new Takeaway();
+        takeaway.setName(name);
+        return takeaway;
+    }
+
+    private static final class BlockingTakeawayService extends TakeawayService {
+
+        private final CountDownLatch started;
+        private final CountDownLatch release;
+
+        BlockingTakeawayService(CountDownLatch started, CountDownLatch release) {
+            this.started = started;
+            this.release = release;
+        }
+
+        @Override
+        public boolean takeOrder(Takeaway takeaway) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.takeOrder(takeaway);
+        }
+    }
+
+    private static final class FailingTakeawayService extends TakeawayService {
+
+        @Override
+        public boolean takeOrder(Takeaway takeaway) {
+            throw new AssertionError("模拟下单时的Error");
+        }
+    }
+}
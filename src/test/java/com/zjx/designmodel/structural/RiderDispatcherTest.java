@@ -0,0 +1,211 @@
+package com.zjx.designmodel.structural;
+
+import com.zjx.designmodel.common.EventSink;
+import com.zjx.designmodel.common.EventSinks;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * RiderDispatcher的单元测试，网格查找的结果与遍历全部骑手的结果比较
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/16 10:00
+ * @Version V1.0
+ **/
+public class RiderDispatcherTest {
+
+    private EventSink previousSink;
+
+    @Before
+    public void silenceEvents() {
+        previousSink = EventSinks.get();
+        EventSinks.set(EventSinks.NOOP);
+    }
+
+    @After
+    public void restoreEvents() {
+        EventSinks.set(previousSink);
+    }
+
+    @Test
+    public void assignsSameDistanceAsBruteForce() {
+        double area = 10_000;
+        double radius = 1_500;
+        int count = 2_000;
+        RiderDispatcher dispatcher = new RiderDispatcher(250, radius);
+        Random random = new Random(42);
+        double[] xs = new double[count];
+        double[] ys = new double[count];
+        for (int i = 0; i < count; i++) {
+            xs[i] = random.nextDouble() * area;
+            ys[i] = random.nextDouble() * area;
+            dispatcher.updatePosition("骑手" + i, xs[i], ys[i]);
+        }
+
+        for (int query = 0; query < 5_000; query++) {
+            // 查询点故意超出骑手分布范围，覆盖最远派单距离内没有骑手的情况
+            double x = random.nextDouble() * area * 1.4 - area * 0.2;
+            double y = random.nextDouble() * area * 1.4 - area * 0.2;
+            double expected = Double.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                expected = Math.min(expected, Math.hypot(xs[i] - x, ys[i] - y));
+            }
+
+            Rider rider = dispatcher.assignNearest(x, y);
+            if (expected > radius) {
+                assertNull("(" + x + ", " + y + ")超出最远派单距离", rider);
+            } else {
+                assertNotNull("(" + x + ", " + y + ")应当派到骑手", rider);
+                assertEquals(expected, Math.hypot(rider.getPosition().getX() - x, rider.getPosition().getY() - y), 1e-9);
+                dispatcher.release(rider);
+            }
+        }
+    }
+
+    @Test
+    public void neverAssignsRiderBeyondMaxSearchRadius() {
+        // 半径1000、格子300，最外圈格子一直延伸到1200米，1100米处的骑手落在最外圈但超出半径
+        RiderDispatcher dispatcher = new RiderDispatcher(300, 1_000);
+        dispatcher.updatePosition("骑手张三", 1_100, 0);
+
+        assertNull(dispatcher.assignNearest(0, 0));
+        assertNotNull(dispatcher.assignNearest(200, 0));
+    }
+
+    @Test
+    public void assignedRiderIsUnavailableUntilReleased() {
+        RiderDispatcher dispatcher = new RiderDispatcher(500, 5_000);
+        dispatcher.updatePosition("骑手张三", 100, 100);
+
+        Rider rider = dispatcher.assignNearest(0, 0);
+        assertNotNull(rider);
+        assertFalse(rider.isAvailable());
+        assertNull(dispatcher.assignNearest(0, 0));
+
+        dispatcher.release(rider);
+        assertSame(rider, dispatcher.assignNearest(0, 0));
+    }
+
+    @Test
+    public void riderIsFoundInNewCellAfterMoving() {
+        RiderDispatcher dispatcher = new RiderDispatcher(500, 1_000);
+        dispatcher.updatePosition("骑手张三", 100, 100);
+        dispatcher.updatePosition("骑手张三", 9_000, 9_000);
+
+        assertNull(dispatcher.assignNearest(0, 0));
+        Rider rider = dispatcher.assignNearest(9_100, 9_100);
+        assertNotNull(rider);
+        assertEquals("骑手张三", rider.getId());
+        assertEquals(1, dispatcher.size());
+    }
+
+    @Test
+    public void completingDeliveryReleasesRider() {
+        RiderDispatcher dispatcher = new RiderDispatcher(500, 5_000);
+        dispatcher.updatePosition("骑手张三", 100, 100);
+        TakeawayService service = new TakeawayService(new DeliveryService(dispatcher));
+
+        Takeaway first = new Takeaway();
+        first.setName("酸菜鱼 ");
+        assertTrue(service.takeOrder(first));
+        assertNull("唯一的骑手正在派送", dispatcher.assignNearest(0, 0));
+
+        service.completeDelivery(first);
+        Rider rider = dispatcher.assignNearest(0, 0);
+        assertNotNull("送达后骑手应当重新空闲", rider);
+        assertEquals("骑手张三", rider.getId());
+    }
+
+    @Test
+    public void orderWithoutFreeRiderIsDispatchedWhenRiderIsReleased() {
+        RiderDispatcher dispatcher = new RiderDispatcher(500, 5_000);
+        dispatcher.updatePosition("骑手张三", 100, 100);
+        DeliveryService deliveryService = new DeliveryService(dispatcher);
+        TakeawayService service = new TakeawayService(deliveryService);
+
+        Takeaway first = takeaway("酸菜鱼 ");
+        Takeaway second = takeaway("水煮鱼 ");
+        Takeaway third = takeaway("毛血旺 ");
+        assertTrue(service.takeOrder(first));
+        assertTrue(service.takeOrder(second));
+        assertTrue(service.takeOrder(third));
+        assertEquals(2, deliveryService.pendingCount());
+
+        // 骑手送达后按下单顺序接下一单
+        service.completeDelivery(first);
+        assertEquals(1, deliveryService.pendingCount());
+        assertNull("骑手已经接了等待中的订单", dispatcher.assignNearest(0, 0));
+        service.completeDelivery(third);
+        assertEquals("第三单还没派出，不能算送达", 1, deliveryService.pendingCount());
+        service.completeDelivery(second);
+        assertEquals(0, deliveryService.pendingCount());
+        service.completeDelivery(third);
+        assertNotNull(dispatcher.assignNearest(0, 0));
+    }
+
+    @Test
+    public void pendingOrderIsDispatchedToNewRider() {
+        RiderDispatcher dispatcher = new RiderDispatcher(500, 5_000);
+        DeliveryService deliveryService = new DeliveryService(dispatcher);
+        deliveryService.delivery(takeaway("酸菜鱼 "));
+        assertEquals(1, deliveryService.pendingCount());
+
+        dispatcher.updatePosition("骑手张三", 100, 100);
+        deliveryService.dispatchPending();
+        assertEquals(0, deliveryService.pendingCount());
+        assertNull(dispatcher.assignNearest(0, 0));
+    }
+
+    @Test
+    public void emptyCellsAreRemovedWhenRidersMove() {
+        RiderDispatcher dispatcher = new RiderDispatcher(100, 1_000);
+        for (int i = 0; i < 1_000; i++) {
+            dispatcher.updatePosition("骑手张三", i * 100, i * 100);
+            dispatcher.updatePosition("骑手李四", 50, 50);
+        }
+        assertEquals(2, dispatcher.occupiedCells());
+    }
+
+    @Test
+    public void concurrentReadersNeverSeeTornPosition() throws InterruptedException {
+        RiderDispatcher dispatcher = new RiderDispatcher(100, 1_000);
+        dispatcher.updatePosition("骑手张三", 0, 0);
+        Rider rider = dispatcher.assignNearest(0, 0);
+        AtomicBoolean torn = new AtomicBoolean();
+        AtomicBoolean done = new AtomicBoolean();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                Position position = rider.getPosition();
+                if (position.getX() != position.getY()) {
+                    torn.set(true);
+                }
+            }
+        });
+        reader.start();
+        // 每次上报的x和y相等，读到的位置x和y也必须相等
+        for (int i = 0; i < 200_000; i++) {
+            dispatcher.updatePosition("骑手张三", i % 5_000, i % 5_000);
+        }
+        done.set(true);
+        reader.join();
+        assertFalse(torn.get());
+    }
+
+    private static Takeaway takeaway(String name) {
+        Takeaway takeaway = new Takeaway();
+        takeaway.setName(name);
+        return takeaway;
+    }
+}
@@ -0,0 +1,47 @@
+package com.zjx.designmodel.structural;
+
+import com.zjx.designmodel.common.EventSink;
+import com.zjx.designmodel.common.EventSinks;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.zjx.designmodel.common.AllocationBudget.assertWithinBudget;
+
+/**
+ * 结构型模式热点方法的分配预算
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/13 17:00
+ * @Version V1.0
+ **/
+public class StructuralAllocationBudgetTest {
+
+    private EventSink previousSink;
+
+    @Before
+    public void silenceEvents() {
+        // 只统计方法本身，不统计事件输出
+        previousSink = EventSinks.get();
+        EventSinks.set(EventSinks.NOOP);
+    }
+
+    @After
+    public void restoreEvents() {
+        EventSinks.set(previousSink);
+    }
+
+    @Test
+    public void flyweightHit() {
+        FlyweightFactory factory = new FlyweightFactory();
+        factory.getFlyweight("a");
+        assertWithinBudget("flyweightFactory.getFlyweight.hit", () -> factory.getFlyweight("a") == null ? 0 : 1);
+    }
+
+    @Test
+    public void decoratorChainPrice() {
+        AbstractFruitSalad chain = new WaterMelonDecorator(new KiwiDecorator(new KiwiDecorator(new FruitSalad())));
+        assertWithinBudget("abstractDecorator.price", chain::price);
+    }
+}
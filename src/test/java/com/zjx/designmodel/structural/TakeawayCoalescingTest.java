@@ -0,0 +1,154 @@
+package com.zjx.designmodel.structural;
+
+import com.zjx.designmodel.common.EventSink;
+import com.zjx.designmodel.common.EventSinks;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * TakeawayService按幂等键合并重复请求的单元测试
+ *
+ * @Description
+ * @Author Carson Cheng
+ * @Date 2020/11/18 16:30
+ * @Version V1.0
+ **/
+public class TakeawayCoalescingTest {
+
+    private final AtomicInteger payments = new AtomicInteger();
+    private EventSink previousSink;
+
+    @Before
+    public void silenceEvents() {
+        previousSink = EventSinks.get();
+        EventSinks.set(EventSinks.NOOP);
+    }
+
+    @After
+    public void restoreEvents() {
+        EventSinks.set(previousSink);
+    }
+
+    @Test
+    public void successfulOrderIsPlacedOnlyOnce() {
+        TakeawayService service = coalescing(new CountingPayService(true));
+        assertTrue(service.takeOrder(takeaway("order-1")));
+        assertTrue(service.takeOrder(takeaway("order-1")));
+        assertEquals(1, payments.get());
+    }
+
+    @Test
+    public void rejectedOrderIsRetriedOnNextRequest() {
+        TakeawayService service = coalescing(new CountingPayService(false));
+        assertFalse(service.takeOrder(takeaway("order-1")));
+        assertFalse(service.takeOrder(takeaway("order-1")));
+        assertEquals(2, payments.get());
+    }
+
+    @Test
+    public void limiterRejectionIsNotCached() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 2.0, 0.5);
+        TakeawayService service = new TakeawayService(new OrderService(), new CountingPayService(true), new DeliveryService(), limiter);
+        service.enableDuplicateCoalescing(1, TimeUnit.MINUTES, 10);
+
+        AdaptiveConcurrencyLimiter.Permit busy = limiter.tryAcquire(System.nanoTime());
+        assertFalse(service.takeOrder(takeaway("order-1")));
+        limiter.release(busy, true);
+
+        assertTrue(service.takeOrder(takeaway("order-1")));
+        assertEquals(1, payments.get());
+    }
+
+    @Test
+    public void failedPaymentIsRetriedOnNextRequest() {
+        PayService broken = new PayService() {
+            @Override
+            public boolean pay(Takeaway takeaway) {
+                payments.incrementAndGet();
+                throw new IllegalStateException("支付系统不可用");
+            }
+        };
+        TakeawayService service = coalescing(broken);
+        for (int i = 0; i < 2; i++) {
+            try {
+                service.takeOrder(takeaway("order-1"));
+                fail("支付异常应当抛给调用方");
+            } catch (IllegalStateException expected) {
+                assertEquals(i + 1, payments.get());
+            }
+        }
+    }
+
+    @Test
+    public void concurrentAsyncDuplicatesShareOneOrder() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        PayService slow = new PayService() {
+            @Override
+            public boolean pay(Takeaway takeaway) {
+                payments.incrementAndGet();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }
+        };
+        TakeawayService service = coalescing(slow);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CompletableFuture<Boolean> first = service.takeOrderAsync(takeaway("order-1"), executor);
+            CompletableFuture<Boolean> retried = service.takeOrderAsync(takeaway("order-1"), executor);
+            assertSame(first, retried);
+
+            release.countDown();
+            assertTrue(retried.get(5, TimeUnit.SECONDS));
+            assertTrue(service.takeOrderAsync(takeaway("order-1"), executor).get(5, TimeUnit.SECONDS));
+            assertEquals(1, payments.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private TakeawayService coalescing(PayService payService) {
+        TakeawayService service = new TakeawayService(new OrderService(), payService, new DeliveryService(), null);
+        service.enableDuplicateCoalescing(1, TimeUnit.MINUTES, 10);
+        return service;
+    }
+
+    private static Takeaway takeaway(String idempotencyKey) {
+        Takeaway takeaway = new Takeaway();
+        takeaway.setName("小龙虾 ");
+        takeaway.setIdempotencyKey(idempotencyKey);
+        return takeaway;
+    }
+
+    private class CountingPayService extends PayService {
+
+        private final boolean result;
+
+        CountingPayService(boolean result) {
+            this.result = result;
+        }
+
+        @Override
+        public boolean pay(Takeaway takeaway) {
+            payments.incrementAndGet();
+            return result;
+        }
+    }
+}